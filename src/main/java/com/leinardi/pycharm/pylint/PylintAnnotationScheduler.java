@@ -0,0 +1,259 @@
+/*
+ * Copyright 2023 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.pylint;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.leinardi.pycharm.pylint.checker.Problem;
+import com.leinardi.pycharm.pylint.checker.ScanFiles;
+import com.leinardi.pycharm.pylint.util.Async;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules the scans of the real-time annotator, so that typing in several editors doesn't stack up Pylint
+ * processes.
+ * <p>
+ * A file is scanned once it hasn't changed for {@link #DEBOUNCE_MS}, together with the other files that are due by
+ * then, in a single {@link ScanFiles} run, where the unsaved editors of a module share one Pylint run of the worker.
+ * Highlighting passes asking for a version of a file that is already waiting
+ * or being scanned share its result. A newer version of a file supersedes the older one: a run whose files were all
+ * superseded is cancelled, which stops its Pylint process.
+ */
+@Service
+public final class PylintAnnotationScheduler implements Disposable {
+
+    private static final Logger LOG = Logger.getInstance(PylintAnnotationScheduler.class);
+
+    private static final long DEBOUNCE_MS = 300;
+    // files due that soon join the batch being started, rather than starting one of their own
+    private static final long COALESCE_MS = DEBOUNCE_MS / 2;
+
+    private final Project project;
+    private final Map<VirtualFile, Request> waiting = new HashMap<>();
+    private final Map<VirtualFile, Request> running = new HashMap<>();
+
+    private ScheduledFuture<?> nextBatch;
+    private long nextBatchDue;
+    private boolean disposed;
+
+    public PylintAnnotationScheduler(@NotNull final Project project) {
+        this.project = project;
+    }
+
+    @NotNull
+    public static PylintAnnotationScheduler getInstance(@NotNull final Project project) {
+        return project.getService(PylintAnnotationScheduler.class);
+    }
+
+    /**
+     * Scan a file and wait for its problems. Must be called from a background thread, under a progress indicator
+     * whose cancellation stops the wait, but not the scan, which later passes over the same version can still use.
+     *
+     * @param psiFile the file.
+     * @return the problems of the file, or null if the scan was superseded by a newer version of the file.
+     */
+    @Nullable
+    public List<Problem> scan(@NotNull final PsiFile psiFile) {
+        final VirtualFile virtualFile = psiFile.getVirtualFile();
+        if (virtualFile == null) {
+            return Collections.emptyList();
+        }
+        return ProgressIndicatorUtils.awaitWithCheckCanceled(
+                request(psiFile, virtualFile, psiFile.getModificationStamp()));
+    }
+
+    private synchronized CompletableFuture<List<Problem>> request(@NotNull final PsiFile psiFile,
+                                                                  @NotNull final VirtualFile virtualFile,
+                                                                  final long modificationStamp) {
+        final Request scanning = running.get(virtualFile);
+        if (scanning != null && scanning.modificationStamp == modificationStamp) {
+            return scanning.result;
+        }
+        final Request queued = waiting.get(virtualFile);
+        if (queued != null && queued.modificationStamp == modificationStamp) {
+            return queued.result;
+        }
+        if (disposed) {
+            return CompletableFuture.completedFuture(Collections.emptyList());
+        }
+
+        if (scanning != null) {
+            running.remove(virtualFile);
+            supersede(scanning);
+        }
+        if (queued != null) {
+            supersede(queued);
+        }
+        final Request request = new Request(psiFile, modificationStamp, System.currentTimeMillis() + DEBOUNCE_MS);
+        waiting.put(virtualFile, request);
+        scheduleNextBatch(request.due);
+        return request.result;
+    }
+
+    private void supersede(@NotNull final Request request) {
+        request.result.complete(null);
+        final Batch batch = request.batch;
+        if (batch != null && batch.requests.stream().allMatch(other -> other.result.isDone())) {
+            LOG.debug("Pylint annotation scan superseded, cancelling it");
+            batch.cancel();
+        }
+    }
+
+    private void scheduleNextBatch(final long due) {
+        if (nextBatch != null && !nextBatch.isDone() && nextBatchDue <= due) {
+            return;
+        }
+        if (nextBatch != null) {
+            nextBatch.cancel(false);
+        }
+        nextBatchDue = due;
+        nextBatch = AppExecutorUtil.getAppScheduledExecutorService().schedule(this::startBatch,
+                Math.max(0, due - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void startBatch() {
+        nextBatch = null;
+        if (disposed) {
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        final Batch batch = new Batch();
+        long nextDue = Long.MAX_VALUE;
+        for (final Iterator<Map.Entry<VirtualFile, Request>> iterator = waiting.entrySet().iterator();
+             iterator.hasNext(); ) {
+            final Map.Entry<VirtualFile, Request> entry = iterator.next();
+            final Request request = entry.getValue();
+            if (request.due <= now + COALESCE_MS) {
+                iterator.remove();
+                request.batch = batch;
+                batch.requests.add(request);
+                running.put(entry.getKey(), request);
+            } else {
+                nextDue = Math.min(nextDue, request.due);
+            }
+        }
+        if (nextDue != Long.MAX_VALUE) {
+            scheduleNextBatch(nextDue);
+        }
+        if (!batch.requests.isEmpty()) {
+            LOG.debug("Starting a Pylint annotation scan of " + batch.requests.size() + " files");
+            batch.future = Async.executeOnPooledThread(() -> {
+                runBatch(batch);
+                return null;
+            });
+        }
+    }
+
+    private void runBatch(@NotNull final Batch batch) {
+        final List<VirtualFile> files = new ArrayList<>();
+        for (final Request request : batch.requests) {
+            files.add(request.psiFile.getVirtualFile());
+        }
+        Map<PsiFile, List<Problem>> results = Collections.emptyMap();
+        try {
+            final PylintPlugin plugin = project.getService(PylintPlugin.class);
+            if (plugin != null && !batch.cancelled) {
+                results = new ScanFiles(plugin, files).call();
+            }
+        } finally {
+            final Map<VirtualFile, List<Problem>> problemsByFile = new HashMap<>();
+            results.forEach((psiFile, problems) -> problemsByFile.put(psiFile.getVirtualFile(), problems));
+            synchronized (this) {
+                for (final Request request : batch.requests) {
+                    final VirtualFile virtualFile = request.psiFile.getVirtualFile();
+                    // a cancelled scan only has partial results, if any
+                    request.result.complete(batch.cancelled
+                            ? null : problemsByFile.getOrDefault(virtualFile, Collections.emptyList()));
+                    running.remove(virtualFile, request);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void dispose() {
+        final List<Request> pending;
+        synchronized (this) {
+            disposed = true;
+            if (nextBatch != null) {
+                nextBatch.cancel(false);
+            }
+            pending = new ArrayList<>(waiting.values());
+            pending.addAll(running.values());
+            waiting.clear();
+            running.clear();
+        }
+        for (final Request request : pending) {
+            request.result.complete(null);
+            if (request.batch != null) {
+                request.batch.cancel();
+            }
+        }
+    }
+
+    /**
+     * A version of a file to scan.
+     */
+    private static final class Request {
+        final PsiFile psiFile;
+        final long modificationStamp;
+        final long due;
+        final CompletableFuture<List<Problem>> result = new CompletableFuture<>();
+        Batch batch;
+
+        Request(final PsiFile psiFile, final long modificationStamp, final long due) {
+            this.psiFile = psiFile;
+            this.modificationStamp = modificationStamp;
+            this.due = due;
+        }
+    }
+
+    /**
+     * Files scanned together.
+     */
+    private static final class Batch {
+        final List<Request> requests = new ArrayList<>();
+        volatile boolean cancelled;
+        volatile Future<?> future;
+
+        void cancel() {
+            cancelled = true;
+            if (future != null) {
+                // interrupting the scan stops its Pylint process
+                future.cancel(true);
+            }
+        }
+    }
+}
@@ -27,8 +27,6 @@ import com.intellij.openapi.project.Project;
 import com.intellij.profile.codeInspection.InspectionProjectProfileManager;
 import com.intellij.psi.PsiFile;
 import com.leinardi.pycharm.pylint.checker.Problem;
-import com.leinardi.pycharm.pylint.checker.ScanFiles;
-import com.leinardi.pycharm.pylint.checker.ScannableFile;
 import com.leinardi.pycharm.pylint.exception.PylintPluginParseException;
 import com.leinardi.pycharm.pylint.plapi.PylintRunner;
 import org.jetbrains.annotations.NotNull;
@@ -38,19 +36,18 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
 import static com.leinardi.pycharm.pylint.PylintBundle.message;
 import static com.leinardi.pycharm.pylint.util.Notifications.showException;
 import static com.leinardi.pycharm.pylint.util.Notifications.showWarning;
-import static java.util.Collections.singletonList;
 
 /**
  * Using the `ExternalAnnotator` API instead of `LocalInspectionTool`, because the former has better behavior with
  * long-running expensive checkers like Pylint. Following multiple successive changes to a file, `LocalInspectionTool`
  * can invoke the checker for each modification from multiple threads in parallel, which can bog down the system
  * (see https://github.com/leinardi/pylint-pycharm/issues/11).
- * `ExternalAnnotator` cancels the previous running check (if any) before running the next one.
+ * `ExternalAnnotator` cancels the previous running check (if any) before running the next one, and the scans themselves
+ * are debounced and batched across files by the {@link PylintAnnotationScheduler}.
  * <p>
  * Modeled after `com.jetbrains.python.validation.Pep8ExternalAnnotator`
  * <p>
@@ -105,23 +102,18 @@ public class PylintAnnotator extends ExternalAnnotator<PylintAnnotator.State, Py
             return NO_PROBLEMS_FOUND;
         }
 
-        final List<ScannableFile> scannableFiles = new ArrayList<>();
         try {
-            scannableFiles.addAll(ScannableFile.createAndValidate(singletonList(psiFile), plugin));
-            if (scannableFiles.isEmpty()) {
-                return NO_PROBLEMS_FOUND;
-            }
-            ScanFiles scanFiles = new ScanFiles(plugin, Collections.singletonList(psiFile.getVirtualFile()));
-            Map<PsiFile, List<Problem>> map = scanFiles.call();
-            map.values().forEach(problems -> problems.removeIf(problem ->
-                    problem.getMessageId().equals(ERROR_MESSAGE_ID_SYNTAX_ERROR)));
-            if (map.isEmpty()) {
+            // files that can't be scanned are skipped by the scan itself
+            List<Problem> problems = PylintAnnotationScheduler.getInstance(project).scan(psiFile);
+            if (problems == null || problems.isEmpty()) {
                 return NO_PROBLEMS_FOUND;
             }
+            problems = new ArrayList<>(problems);
+            problems.removeIf(problem -> problem.getMessageId().equals(ERROR_MESSAGE_ID_SYNTAX_ERROR));
 
             long duration = System.currentTimeMillis() - startTime;
             LOG.debug("Pylint scan completed: " + psiFile.getName() + " in " + duration + " ms");
-            return new Results(map.get(psiFile));
+            return new Results(problems);
 
         } catch (ProcessCanceledException | AssertionError e) {
             LOG.debug("Process cancelled when scanning: " + psiFile.getName());
@@ -134,9 +126,6 @@ public class PylintAnnotator extends ExternalAnnotator<PylintAnnotator.State, Py
         } catch (Throwable e) {
             handlePluginException(e, psiFile, project);
             return NO_PROBLEMS_FOUND;
-
-        } finally {
-            scannableFiles.forEach(ScannableFile::deleteIfRequired);
         }
     }
 
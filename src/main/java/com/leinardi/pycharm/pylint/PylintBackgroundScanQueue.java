@@ -0,0 +1,233 @@
+/*
+ * Copyright 2023 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.pylint;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.leinardi.pycharm.pylint.checker.Problem;
+import com.leinardi.pycharm.pylint.checker.ScanFiles;
+import com.leinardi.pycharm.pylint.checker.UiFeedbackScannerListener;
+import com.leinardi.pycharm.pylint.toolwindow.PylintToolWindowPanel;
+import com.leinardi.pycharm.pylint.util.Async;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scans saved files in the background, when enabled in the settings, and merges their results into the tool window.
+ * <p>
+ * Saved files wait in a queue, where a file saved again keeps its place, until no file has been saved for
+ * {@link #DRAIN_DELAY_MS}. The queue is then drained in batches of up to {@link #BATCH_FILES}, one at a time and
+ * each by a single Pylint process, so that the scans don't compete with the ones the user starts, which also take
+ * precedence: a batch waits for the scan in progress, for up to {@link #MAX_DRAIN_DEFERRALS} delays, is stopped like
+ * the scans the user starts, and cancelled by the next one.
+ * <p>
+ * The queue holds up to {@link #MAX_QUEUED_FILES}: past that, as after switching to another branch, only the files
+ * whose results are displayed are still queued, and the others are left to the scans the user starts.
+ */
+@Service
+public final class PylintBackgroundScanQueue implements Disposable {
+
+    private static final Logger LOG = Logger.getInstance(PylintBackgroundScanQueue.class);
+
+    private static final long DRAIN_DELAY_MS = 1000;
+    private static final int BATCH_FILES = 50;
+    private static final int MAX_QUEUED_FILES = 200;
+    private static final int MAX_DRAIN_DEFERRALS = 60;
+
+    private final Project project;
+    private final Set<VirtualFile> queued = new LinkedHashSet<>();
+
+    private Set<VirtualFile> displayedFiles = Collections.emptySet();
+    private ScheduledFuture<?> nextDrain;
+    private Future<?> draining;
+    private int drainDeferrals;
+    private boolean disposed;
+
+    public PylintBackgroundScanQueue(@NotNull final Project project) {
+        this.project = project;
+    }
+
+    @NotNull
+    public static PylintBackgroundScanQueue getInstance(@NotNull final Project project) {
+        return project.getService(PylintBackgroundScanQueue.class);
+    }
+
+    /**
+     * Queue files that were saved, to be scanned together with the displayed files importing them.
+     * <p>
+     * This is expected to be called from the event thread, once the saved files were invalidated in the
+     * {@link PylintImportGraph} and the cached results of their dependents dropped.
+     *
+     * @param changedFiles the files that were saved.
+     */
+    public void enqueue(@NotNull final Collection<VirtualFile> changedFiles) {
+        final Set<VirtualFile> displayed = new HashSet<>();
+        final PylintToolWindowPanel toolWindowPanel = PylintToolWindowPanel.panelFor(project);
+        if (toolWindowPanel != null) {
+            for (final PsiFile psiFile : toolWindowPanel.getScannedFiles()) {
+                if (psiFile.isValid() && psiFile.getVirtualFile() != null) {
+                    displayed.add(psiFile.getVirtualFile());
+                }
+            }
+        }
+        synchronized (this) {
+            if (disposed) {
+                return;
+            }
+            displayedFiles = displayed;
+            int dropped = 0;
+            for (final VirtualFile file : changedFiles) {
+                if (queued.size() < MAX_QUEUED_FILES || displayed.contains(file)) {
+                    queued.add(file);
+                } else {
+                    dropped++;
+                }
+            }
+            if (dropped > 0) {
+                LOG.debug("Background scan queue full, " + dropped + " saved files were not queued");
+            }
+            scheduleDrain();
+        }
+    }
+
+    private synchronized void scheduleDrain() {
+        if (nextDrain != null) {
+            nextDrain.cancel(false);
+        }
+        nextDrain = AppExecutorUtil.getAppScheduledExecutorService().schedule(this::drain,
+                DRAIN_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void drain() {
+        nextDrain = null;
+        if (disposed || queued.isEmpty()) {
+            return;
+        }
+        final PylintPlugin plugin = project.getService(PylintPlugin.class);
+        if (plugin == null) {
+            return;
+        }
+        if (draining != null && !draining.isDone()) {
+            scheduleDrain();
+            return;
+        }
+        // a long scan of the user's must not hold back the saved files for good
+        if (plugin.isScanInProgress() && drainDeferrals < MAX_DRAIN_DEFERRALS) {
+            drainDeferrals++;
+            scheduleDrain();
+            return;
+        }
+        drainDeferrals = 0;
+
+        final List<VirtualFile> batch = new ArrayList<>(BATCH_FILES);
+        for (final Iterator<VirtualFile> iterator = queued.iterator(); iterator.hasNext()
+                && batch.size() < BATCH_FILES; ) {
+            final VirtualFile file = iterator.next();
+            iterator.remove();
+            if (file.isValid()) {
+                batch.add(file);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        final Set<VirtualFile> displayed = displayedFiles;
+        draining = Async.executeOnPooledThread(() -> {
+            try {
+                scan(plugin, batch, displayed);
+            } finally {
+                synchronized (this) {
+                    if (!disposed && !queued.isEmpty()) {
+                        scheduleDrain();
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    @SuppressWarnings("FutureReturnValueIgnored")
+    private void scan(@NotNull final PylintPlugin plugin,
+                      @NotNull final List<VirtualFile> batch,
+                      @NotNull final Set<VirtualFile> displayed) {
+        final Set<VirtualFile> files = new LinkedHashSet<>(batch);
+        final PylintImportGraph importGraph = PylintImportGraph.getInstance(project);
+        if (importGraph != null && !displayed.isEmpty()) {
+            final Set<VirtualFile> dependents = importGraph.withDependents(batch);
+            dependents.retainAll(displayed);
+            dependents.removeAll(files);
+            // their cached results were dropped when the files were saved
+            files.addAll(dependents);
+        }
+        LOG.debug("Scanning " + files.size() + " saved files in the background");
+
+        final ScanFiles scanFiles = new ScanFiles(plugin, new ArrayList<>(files));
+        // a single process, which the Pylint worker can run without starting a new one
+        scanFiles.setMaxWorkers(1);
+        final UiFeedbackScannerListener feedback = new UiFeedbackScannerListener(plugin, true);
+        scanFiles.addListener(feedback);
+        final CompletableFuture<Map<PsiFile, List<Problem>>> future = plugin.runBackgroundCheck(scanFiles);
+        future.whenComplete((results, error) -> {
+            if (future.isCancelled()) {
+                feedback.discardResults();
+            }
+        });
+        try {
+            future.get();
+        } catch (CancellationException | ExecutionException e) {
+            LOG.debug("Background scan of " + files.size() + " saved files did not complete", e);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void dispose() {
+        synchronized (this) {
+            disposed = true;
+            queued.clear();
+            if (nextDrain != null) {
+                nextDrain.cancel(false);
+            }
+            if (draining != null) {
+                // interrupting the scan stops its Pylint process
+                draining.cancel(true);
+            }
+        }
+    }
+}
@@ -31,12 +31,22 @@ public class PylintConfigService implements PersistentStateComponent<PylintConfi
         pylintArguments = "";
         pylintrcPath = "";
         scanBeforeCheckin = true;
+        scanChangedLinesOnly = false;
+        scanOnSave = false;
+        scanWorkers = defaultScanWorkers();
     }
 
     private String customPylintPath;
     private String pylintrcPath;
     private String pylintArguments;
     private boolean scanBeforeCheckin;
+    private boolean scanChangedLinesOnly;
+    private boolean scanOnSave;
+    private int scanWorkers;
+
+    public static int defaultScanWorkers() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    }
 
     public String getCustomPylintPath() {
         return customPylintPath;
@@ -70,6 +80,36 @@ public class PylintConfigService implements PersistentStateComponent<PylintConfi
         this.scanBeforeCheckin = scanBeforeCheckin;
     }
 
+    /**
+     * @return true if the scan before check-in only reports the problems on the lines changed by the commit.
+     */
+    public boolean isScanChangedLinesOnly() {
+        return scanChangedLinesOnly;
+    }
+
+    public void setScanChangedLinesOnly(boolean scanChangedLinesOnly) {
+        this.scanChangedLinesOnly = scanChangedLinesOnly;
+    }
+
+    /**
+     * @return true if saved files are scanned in the background, their results merged into the tool window.
+     */
+    public boolean isScanOnSave() {
+        return scanOnSave;
+    }
+
+    public void setScanOnSave(boolean scanOnSave) {
+        this.scanOnSave = scanOnSave;
+    }
+
+    public int getScanWorkers() {
+        return scanWorkers;
+    }
+
+    public void setScanWorkers(int scanWorkers) {
+        this.scanWorkers = scanWorkers;
+    }
+
     @Nullable
     @Override
     public PylintConfigService getState() {
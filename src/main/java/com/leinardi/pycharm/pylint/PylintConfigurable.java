@@ -31,6 +31,7 @@ import javax.swing.JComponent;
 public class PylintConfigurable implements Configurable {
     private static final Logger LOG = Logger.getInstance(PylintConfigurable.class);
 
+    private final Project project;
     private final PylintConfigPanel configPanel;
     private final PylintConfigService pylintConfigService;
 
@@ -40,6 +41,7 @@ public class PylintConfigurable implements Configurable {
 
     PylintConfigurable(@NotNull final Project project,
                        @NotNull final PylintConfigPanel configPanel) {
+        this.project = project;
         this.configPanel = configPanel;
         pylintConfigService = PylintConfigService.getInstance(project);
     }
@@ -68,7 +70,9 @@ public class PylintConfigurable implements Configurable {
     public boolean isModified() {
         boolean result = !configPanel.getPylintPath().equals(pylintConfigService.getCustomPylintPath())
                 || !configPanel.getPylintrcPath().equals(pylintConfigService.getPylintrcPath())
-                || !configPanel.getPylintArguments().equals(pylintConfigService.getPylintArguments());
+                || !configPanel.getPylintArguments().equals(pylintConfigService.getPylintArguments())
+                || configPanel.getScanWorkers() != pylintConfigService.getScanWorkers()
+                || configPanel.isScanOnSave() != pylintConfigService.isScanOnSave();
         if (LOG.isDebugEnabled()) {
             LOG.debug("Has config changed? " + result);
         }
@@ -80,6 +84,10 @@ public class PylintConfigurable implements Configurable {
         pylintConfigService.setCustomPylintPath(configPanel.getPylintPath());
         pylintConfigService.setPylintrcPath(configPanel.getPylintrcPath());
         pylintConfigService.setPylintArguments(configPanel.getPylintArguments());
+        pylintConfigService.setScanWorkers(configPanel.getScanWorkers());
+        pylintConfigService.setScanOnSave(configPanel.isScanOnSave());
+        // validate Pylint again, e.g. after installing it and applying unchanged settings
+        PylintEnvironmentService.getInstance(project).invalidate();
     }
 
     @Override
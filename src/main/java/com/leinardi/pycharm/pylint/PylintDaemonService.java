@@ -0,0 +1,247 @@
+/*
+ * Copyright 2023 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.pylint;
+
+import com.intellij.execution.ExecutionException;
+import com.intellij.execution.configurations.GeneralCommandLine;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.leinardi.pycharm.pylint.exception.PylintToolException;
+import com.leinardi.pycharm.pylint.plapi.Issue;
+import com.leinardi.pycharm.pylint.plapi.PylintDaemon;
+import com.leinardi.pycharm.pylint.util.Async;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Owns the pool of long-lived Pylint workers of a project.
+ * <p>
+ * Workers are started lazily, up to {@link PylintConfigService#getScanWorkers()} but no more than
+ * {@link #MAX_WORKERS}, as each of them holds its own AST cache of the project, and all of them are restarted whenever
+ * the launch fingerprint (interpreter, Pylint path, pylintrc and arguments) changes. A caller that finds every worker
+ * busy gets {@code null} and is expected to fall back to a one-shot Pylint process, so that real-time annotations are
+ * never queued behind a long project scan. Workers left idle for {@link #IDLE_TIMEOUT_MINUTES} are stopped, the last
+ * one too.
+ */
+@Service
+public final class PylintDaemonService implements Disposable {
+
+    private static final Logger LOG = Logger.getInstance(PylintDaemonService.class);
+
+    private static final long IDLE_TIMEOUT_MINUTES = 5;
+    private static final int MAX_WORKERS = 2;
+
+    private final Project project;
+    private final Deque<PylintDaemon> idle = new ArrayDeque<>();
+    private final Set<PylintDaemon> workers = new HashSet<>();
+    private final ScheduledFuture<?> idleReaper;
+
+    private int starting;
+    private String fingerprint;
+    private boolean unavailable;
+    private boolean disposed;
+
+    public PylintDaemonService(@NotNull final Project project) {
+        this.project = project;
+        this.idleReaper = AppExecutorUtil.getAppScheduledExecutorService().scheduleWithFixedDelay(
+                this::stopIdleWorkers, IDLE_TIMEOUT_MINUTES, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Run a scan in an idle worker.
+     *
+     * @param launchFingerprint identifies the configuration the worker must have been started with.
+     * @param launchCommand     the command line used when a worker has to be started.
+     * @param sysPath           the directories added to the Python path for this scan only.
+     * @param arguments         the Pylint arguments, including the files to scan.
+     * @param unsavedContents   the contents to scan instead of the files on disk, by path.
+     * @param issueConsumer     receives each issue as soon as the worker reports it.
+     * @return the worker's final response, or null if every worker is busy or workers cannot be used.
+     * @throws InterruptedIOException if the scan was interrupted.
+     */
+    @Nullable
+    public PylintDaemon.Response scan(@NotNull final String launchFingerprint,
+                                      @NotNull final LaunchCommand launchCommand,
+                                      @NotNull final List<String> sysPath,
+                                      @NotNull final List<String> arguments,
+                                      @NotNull final Map<String, String> unsavedContents,
+                                      @NotNull final Consumer<Issue> issueConsumer) throws InterruptedIOException {
+        final PylintDaemon worker = acquire(launchFingerprint, launchCommand);
+        if (worker == null) {
+            LOG.debug("No Pylint daemon available, falling back to a one-shot process");
+            return null;
+        }
+        boolean healthy = false;
+        final AtomicBoolean delivered = new AtomicBoolean();
+        // stopping the worker is the only way to interrupt a scan: it is restarted on the next one
+        final Async.CancelWatch stopOnCancel = Async.onCancel(worker::stop);
+        try {
+            final PylintDaemon.Response response = worker.scan(Objects.requireNonNull(project.getBasePath()),
+                    sysPath, arguments, unsavedContents, issue -> {
+                        delivered.set(true);
+                        issueConsumer.accept(issue);
+                    });
+            healthy = true;
+            return response;
+
+        } catch (InterruptedIOException e) {
+            throw e;
+
+        } catch (IOException e) {
+            ProgressManager.checkCanceled();
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Pylint daemon scan cancelled");
+            }
+            if (delivered.get()) {
+                // issues were already handed out: falling back would report them twice
+                throw new PylintToolException("Pylint daemon failed during the scan", e);
+            }
+            LOG.warn("Pylint daemon failed, it will be restarted on the next scan", e);
+            return null;
+
+        } finally {
+            stopOnCancel.cancel();
+            release(worker, launchFingerprint, healthy);
+        }
+    }
+
+    @Nullable
+    private PylintDaemon acquire(@NotNull final String launchFingerprint,
+                                 @NotNull final LaunchCommand launchCommand) {
+        synchronized (this) {
+            if (disposed) {
+                return null;
+            }
+            if (!launchFingerprint.equals(fingerprint)) {
+                stopIdleWorkers(0);
+                fingerprint = launchFingerprint;
+                unavailable = false;
+            }
+            while (!idle.isEmpty()) {
+                final PylintDaemon worker = idle.pop();
+                if (worker.isAlive()) {
+                    return worker;
+                }
+                LOG.info("Pylint daemon died, discarding it");
+                workers.remove(worker);
+            }
+            if (unavailable || workers.size() + starting >= maxWorkers()) {
+                return null;
+            }
+            starting++;
+        }
+
+        // starting a worker imports Pylint, which takes a while: don't hold the lock meanwhile
+        PylintDaemon worker = null;
+        try {
+            worker = PylintDaemon.start(launchCommand.create());
+        } catch (ExecutionException | IOException e) {
+            // don't retry until the configuration changes: Pylint is most likely not importable
+            LOG.warn("Unable to start the Pylint daemon, using one-shot processes", e);
+        }
+
+        synchronized (this) {
+            starting--;
+            if (worker == null) {
+                unavailable = launchFingerprint.equals(fingerprint);
+            } else if (disposed || !launchFingerprint.equals(fingerprint)) {
+                worker.stop();
+                worker = null;
+            } else {
+                workers.add(worker);
+            }
+        }
+        return worker;
+    }
+
+    private synchronized void release(@NotNull final PylintDaemon worker,
+                                      @NotNull final String launchFingerprint,
+                                      final boolean healthy) {
+        if (healthy && !disposed && launchFingerprint.equals(fingerprint) && worker.isAlive()) {
+            idle.push(worker);
+        } else {
+            workers.remove(worker);
+            worker.stop();
+        }
+    }
+
+    private int maxWorkers() {
+        final PylintConfigService pylintConfigService = PylintConfigService.getInstance(project);
+        final int scanWorkers = pylintConfigService == null ? 1 : pylintConfigService.getScanWorkers();
+        return Math.max(1, Math.min(MAX_WORKERS, scanWorkers));
+    }
+
+    private void stopIdleWorkers() {
+        stopIdleWorkers(TimeUnit.MINUTES.toMillis(IDLE_TIMEOUT_MINUTES));
+    }
+
+    private synchronized void stopIdleWorkers(final long idleMillis) {
+        final long now = System.currentTimeMillis();
+        final List<PylintDaemon> stopped = new ArrayList<>();
+        for (final PylintDaemon worker : idle) {
+            if (now - worker.getLastUsed() >= idleMillis) {
+                stopped.add(worker);
+            }
+        }
+        for (PylintDaemon worker : stopped) {
+            idle.remove(worker);
+            workers.remove(worker);
+            worker.stop();
+        }
+    }
+
+    @Override
+    public void dispose() {
+        idleReaper.cancel(false);
+        final List<PylintDaemon> running;
+        synchronized (this) {
+            disposed = true;
+            running = new ArrayList<>(workers);
+            workers.clear();
+            idle.clear();
+        }
+        // don't wait for running scans: killing the workers makes them fail fast
+        running.forEach(PylintDaemon::stop);
+    }
+
+    /**
+     * Builds the command line that launches a worker.
+     */
+    @FunctionalInterface
+    public interface LaunchCommand {
+        GeneralCommandLine create() throws IOException;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2023 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.pylint;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.projectRoots.ProjectJdkTable;
+import com.intellij.openapi.projectRoots.Sdk;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.jetbrains.python.packaging.PyPackageManager;
+import com.leinardi.pycharm.pylint.plapi.PylintEnvironment;
+import com.leinardi.pycharm.pylint.plapi.PylintRunner;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the resolved {@link PylintEnvironment} of a project, so that checking whether Pylint can be run doesn't spawn
+ * a process on every scan and every annotation.
+ * <p>
+ * The environment is resolved again when the custom Pylint path or the project interpreter changes, when an SDK is
+ * renamed or removed, when the packages of an interpreter change, e.g. after upgrading Pylint or astroid, when the
+ * interpreter or the Pylint executable is changed on disk, when the settings are applied and, while Pylint is missing,
+ * when a Pylint executable appears.
+ */
+@Service
+public final class PylintEnvironmentService implements Disposable {
+
+    private static final Logger LOG = Logger.getInstance(PylintEnvironmentService.class);
+
+    private final Project project;
+    private final Object resolveLock = new Object();
+    private final AtomicInteger generation = new AtomicInteger();
+
+    private volatile PylintEnvironment environment;
+
+    public PylintEnvironmentService(@NotNull final Project project) {
+        this.project = project;
+
+        project.getMessageBus().connect(this).subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+            @Override
+            public void after(@NotNull final List<? extends VFileEvent> events) {
+                final PylintEnvironment current = environment;
+                if (current != null && events.stream().anyMatch(event -> affects(current, event))) {
+                    invalidate();
+                }
+            }
+        });
+        ApplicationManager.getApplication().getMessageBus().connect(this)
+                .subscribe(ProjectJdkTable.JDK_TABLE_TOPIC, new ProjectJdkTable.Listener() {
+                    @Override
+                    public void jdkRemoved(@NotNull final Sdk jdk) {
+                        invalidate();
+                    }
+
+                    @Override
+                    public void jdkNameChanged(@NotNull final Sdk jdk, @NotNull final String previousName) {
+                        invalidate();
+                    }
+                });
+        ApplicationManager.getApplication().getMessageBus().connect(this)
+                .subscribe(PyPackageManager.PACKAGE_MANAGER_TOPIC, sdk -> invalidate());
+    }
+
+    @NotNull
+    public static PylintEnvironmentService getInstance(@NotNull final Project project) {
+        return project.getService(PylintEnvironmentService.class);
+    }
+
+    /**
+     * Get the environment, resolving it first if needed. Resolving runs Pylint, so this must not be called from the
+     * event dispatch thread.
+     *
+     * @return the environment.
+     */
+    @NotNull
+    public PylintEnvironment getEnvironment() {
+        final PylintEnvironment current = environment;
+        if (current != null && current.isUpToDate(project)) {
+            return current;
+        }
+        // concurrent callers wait for a single resolution rather than each spawning its own processes
+        synchronized (resolveLock) {
+            final PylintEnvironment resolved = environment;
+            if (resolved != null && resolved.isUpToDate(project)) {
+                return resolved;
+            }
+            final int resolvedGeneration = generation.get();
+            final PylintEnvironment fresh = PylintEnvironment.resolve(project);
+            LOG.debug("Resolved Pylint environment, valid: " + fresh.isValid());
+            // an invalidation while resolving may mean the result is already stale: use it, but don't keep it
+            if (generation.get() == resolvedGeneration) {
+                environment = fresh;
+            }
+            return fresh;
+        }
+    }
+
+    /**
+     * Forget the environment, so that it is resolved again on next use.
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        environment = null;
+    }
+
+    private static boolean affects(@NotNull final PylintEnvironment current, @NotNull final VFileEvent event) {
+        final String path = event.getPath();
+        return current.dependsOn(path)
+                || (!current.isValid() && PylintRunner.PYLINT_EXECUTABLE_NAME.equals(
+                path.substring(path.lastIndexOf('/') + 1)));
+    }
+
+    @Override
+    public void dispose() {
+        environment = null;
+    }
+}
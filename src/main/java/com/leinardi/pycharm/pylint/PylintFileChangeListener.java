@@ -0,0 +1,103 @@
+/*
+ * Copyright 2023 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.pylint;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileContentChangeEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.leinardi.pycharm.pylint.util.Async;
+import com.leinardi.pycharm.pylint.util.FileTypes;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Scans again the project files that were written to disk, and the files importing them, when their results are
+ * displayed in the tool window. When saved files are scanned in the background, all the saved files are queued instead,
+ * see {@link PylintBackgroundScanQueue}.
+ * <p>
+ * Whether displayed or not, the cached results of all the files importing a saved file, directly or not, are dropped
+ * first: they may depend on what changed, e.g. {@code no-member}.
+ */
+public class PylintFileChangeListener implements BulkFileListener {
+
+    private final Project project;
+
+    public PylintFileChangeListener(@NotNull final Project project) {
+        this.project = project;
+    }
+
+    @Override
+    @SuppressWarnings("FutureReturnValueIgnored")
+    public void after(@NotNull final List<? extends VFileEvent> events) {
+        if (project.isDisposed()) {
+            return;
+        }
+        final ProjectFileIndex projectFileIndex = ProjectFileIndex.getInstance(project);
+        final List<VirtualFile> changedFiles = new ArrayList<>();
+        for (final VFileEvent event : events) {
+            final VirtualFile file = event.getFile();
+            if (event instanceof VFileContentChangeEvent && file != null && file.isValid()
+                    && FileTypes.isPython(file.getFileType()) && projectFileIndex.isInContent(file)) {
+                changedFiles.add(file);
+            }
+        }
+        if (changedFiles.isEmpty()) {
+            return;
+        }
+        final PylintImportGraph importGraph = PylintImportGraph.getInstance(project);
+        if (importGraph == null) {
+            rescan(changedFiles);
+            return;
+        }
+        importGraph.invalidate(changedFiles);
+        Async.executeOnPooledThread(() -> {
+            invalidateDependents(importGraph, changedFiles);
+            // the rescans must not find the results just dropped still cached
+            ApplicationManager.getApplication().invokeLater(() -> rescan(changedFiles), project.getDisposed());
+            return null;
+        });
+    }
+
+    private void invalidateDependents(final PylintImportGraph importGraph, final List<VirtualFile> changedFiles) {
+        final PylintResultCache resultCache = PylintResultCache.getInstance(project);
+        if (resultCache == null || project.isDisposed()) {
+            return;
+        }
+        final Set<VirtualFile> dependents = importGraph.withDependents(changedFiles);
+        dependents.removeAll(changedFiles);
+        if (!dependents.isEmpty()) {
+            resultCache.invalidate(dependents.stream().map(VirtualFile::getPath).collect(Collectors.toSet()));
+        }
+    }
+
+    private void rescan(final List<VirtualFile> changedFiles) {
+        final PylintConfigService pylintConfigService = PylintConfigService.getInstance(project);
+        if (pylintConfigService != null && pylintConfigService.isScanOnSave()) {
+            PylintBackgroundScanQueue.getInstance(project).enqueue(changedFiles);
+        } else {
+            project.getService(PylintPlugin.class).asyncRescanChangedFiles(changedFiles);
+        }
+    }
+}
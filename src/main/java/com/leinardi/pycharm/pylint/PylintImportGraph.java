@@ -0,0 +1,204 @@
+/*
+ * Copyright 2023 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.pylint;
+
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.search.FileTypeIndex;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.jetbrains.python.PythonFileType;
+import com.jetbrains.python.psi.PyFile;
+import com.jetbrains.python.psi.PyFromImportStatement;
+import com.jetbrains.python.psi.PyImportElement;
+import com.jetbrains.python.psi.PyImportStatementBase;
+import com.jetbrains.python.psi.PyUtil;
+import com.jetbrains.python.psi.resolve.RatedResolveResult;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Which project module imports which, as resolved by the Python PSI.
+ * <p>
+ * Pylint checks like {@code no-member} or {@code import-error} look into the imported modules, so a change in a
+ * module can change the results of the modules importing it, directly or not. The graph is built on first use and then
+ * kept up to date one file at a time, as files are reported as changed.
+ */
+@Service
+public final class PylintImportGraph {
+
+    private static final Logger LOG = Logger.getInstance(PylintImportGraph.class);
+
+    private final Project project;
+    private final Map<VirtualFile, Set<VirtualFile>> imports = new HashMap<>();
+    private final Map<VirtualFile, Set<VirtualFile>> importers = new HashMap<>();
+    private final Set<VirtualFile> stale = new HashSet<>();
+
+    private boolean built;
+
+    public PylintImportGraph(@NotNull final Project project) {
+        this.project = project;
+    }
+
+    @Nullable
+    public static PylintImportGraph getInstance(@NotNull final Project project) {
+        return project.getService(PylintImportGraph.class);
+    }
+
+    /**
+     * Mark files whose imports may have changed, to be resolved again on the next query.
+     *
+     * @param files the changed files.
+     */
+    public synchronized void invalidate(@NotNull final Collection<VirtualFile> files) {
+        stale.addAll(files);
+    }
+
+    /**
+     * Find the files whose Pylint results can be affected by a change in the given ones.
+     * <p>
+     * This resolves imports, so it must not be called from the event dispatch thread.
+     *
+     * @param files the changed files.
+     * @return the changed files and all the files importing them, directly or not.
+     */
+    @NotNull
+    public Set<VirtualFile> withDependents(@NotNull final Collection<VirtualFile> files) {
+        refresh();
+
+        final Set<VirtualFile> affected = new HashSet<>(files);
+        final Deque<VirtualFile> toVisit = new ArrayDeque<>(files);
+        synchronized (this) {
+            while (!toVisit.isEmpty()) {
+                for (final VirtualFile importer : importers.getOrDefault(toVisit.pop(), Collections.emptySet())) {
+                    if (affected.add(importer)) {
+                        toVisit.push(importer);
+                    }
+                }
+            }
+        }
+        return affected;
+    }
+
+    private void refresh() {
+        final boolean firstQuery;
+        synchronized (this) {
+            firstQuery = !built;
+        }
+        if (firstQuery) {
+            // never wait for a read action while holding the lock: invalidate is called from write actions
+            final Collection<VirtualFile> projectFiles = ReadAction.nonBlocking(() -> FileTypeIndex.getFiles(
+                    PythonFileType.INSTANCE, GlobalSearchScope.projectScope(project)))
+                    .inSmartMode(project).executeSynchronously();
+            synchronized (this) {
+                if (!built) {
+                    stale.addAll(projectFiles);
+                    built = true;
+                }
+            }
+        }
+
+        final List<VirtualFile> toResolve;
+        synchronized (this) {
+            toResolve = new ArrayList<>(stale);
+            stale.clear();
+        }
+
+        LOG.debug("Resolving the imports of " + toResolve.size() + " files");
+        for (int i = 0; i < toResolve.size(); i++) {
+            final VirtualFile file = toResolve.get(i);
+            try {
+                // a short read action per file, so that the graph never holds up a write action for long
+                final Set<VirtualFile> fileImports = ReadAction.nonBlocking(() -> resolveImports(file))
+                        .inSmartMode(project).executeSynchronously();
+                setImports(file, fileImports);
+            } catch (RuntimeException e) {
+                invalidate(toResolve.subList(i, toResolve.size()));
+                throw e;
+            }
+        }
+    }
+
+    private synchronized void setImports(@NotNull final VirtualFile file, @NotNull final Set<VirtualFile> fileImports) {
+        final Set<VirtualFile> previous = fileImports.isEmpty() ? imports.remove(file) : imports.put(file, fileImports);
+        if (previous != null) {
+            previous.forEach(imported -> {
+                final Set<VirtualFile> fileImporters = importers.get(imported);
+                if (fileImporters != null) {
+                    fileImporters.remove(file);
+                }
+            });
+        }
+        fileImports.forEach(imported -> importers.computeIfAbsent(imported, key -> new HashSet<>()).add(file));
+    }
+
+    @NotNull
+    private Set<VirtualFile> resolveImports(@NotNull final VirtualFile file) {
+        if (!file.isValid()) {
+            return Collections.emptySet();
+        }
+        final PsiFile psiFile = PsiManager.getInstance(project).findFile(file);
+        if (!(psiFile instanceof PyFile)) {
+            return Collections.emptySet();
+        }
+
+        final Set<VirtualFile> fileImports = new HashSet<>();
+        for (final PyImportStatementBase statement : PsiTreeUtil.findChildrenOfType(psiFile,
+                PyImportStatementBase.class)) {
+            if (statement instanceof PyFromImportStatement) {
+                for (final PsiElement source : ((PyFromImportStatement) statement).resolveImportSourceCandidates()) {
+                    addImport(fileImports, source);
+                }
+            }
+            for (final PyImportElement importElement : statement.getImportElements()) {
+                for (final RatedResolveResult result : importElement.multiResolve()) {
+                    addImport(fileImports, result.getElement());
+                }
+            }
+        }
+        fileImports.remove(file);
+        return fileImports;
+    }
+
+    private void addImport(@NotNull final Set<VirtualFile> fileImports, @Nullable final PsiElement element) {
+        final PsiElement target = element == null ? null : PyUtil.turnDirIntoInit(element);
+        final PsiFile targetFile = target == null ? null : target.getContainingFile();
+        final VirtualFile virtualFile = targetFile == null ? null : targetFile.getVirtualFile();
+        // library modules don't change while working on the project
+        if (virtualFile != null && ProjectFileIndex.getInstance(project).isInContent(virtualFile)) {
+            fileImports.add(virtualFile);
+        }
+    }
+}
@@ -18,28 +18,36 @@ package com.leinardi.pycharm.pylint;
 
 import com.intellij.openapi.components.Service;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.project.ProjectUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.leinardi.pycharm.pylint.checker.Problem;
 import com.leinardi.pycharm.pylint.checker.ScanFiles;
 import com.leinardi.pycharm.pylint.checker.ScannerListener;
 import com.leinardi.pycharm.pylint.checker.UiFeedbackScannerListener;
-import com.leinardi.pycharm.pylint.exception.PylintPluginException;
+import com.leinardi.pycharm.pylint.toolwindow.PylintToolWindowPanel;
 import com.leinardi.pycharm.pylint.util.Async;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
-import static com.leinardi.pycharm.pylint.util.Async.whenFinished;
+import static com.leinardi.pycharm.pylint.util.Async.resultOf;
 
 /**
  * Main class for the Pylint scanning plug-in.
@@ -50,9 +58,17 @@ public final class PylintPlugin {
     private static final Logger LOG = com.intellij.openapi.diagnostic.Logger.getInstance(PylintPlugin.class);
 
     private static final long NO_TIMEOUT = 0L;
+    private static final long RESCAN_DELAY_MS = 300;
 
     private final Set<Future<?>> checksInProgress = new HashSet<>();
+    // the checks in progress that the user did not start: guarded by checksInProgress
+    private final Set<Future<?>> backgroundChecks = new HashSet<>();
     private final Project project;
+    // the changed files waiting for a rescan, guarding the other fields of the rescan too
+    private final Set<VirtualFile> pendingRescan = new LinkedHashSet<>();
+
+    private Set<VirtualFile> rescanDisplayedFiles = Collections.emptySet();
+    private ScheduledFuture<?> nextRescan;
 
     /**
      * Construct a plug-in instance for the given project.
@@ -64,6 +80,10 @@ public final class PylintPlugin {
 
         LOG.info("Pylint Plugin loaded with project base dir: \"" + getProjectPath() + "\"");
 
+        final PylintResultCache resultCache = PylintResultCache.getInstance(project);
+        if (resultCache != null) {
+            resultCache.loadInBackground();
+        }
     }
 
     public Project getProject() {
@@ -97,7 +117,7 @@ public final class PylintPlugin {
         LOG.warn(action + " failed", e);
     }
 
-    private <T> Future<T> checkInProgress(final Future<T> checkFuture) {
+    private <F extends Future<?>> F checkInProgress(final F checkFuture) {
         synchronized (checksInProgress) {
             if (!checkFuture.isDone()) {
                 checksInProgress.add(checkFuture);
@@ -110,6 +130,20 @@ public final class PylintPlugin {
         synchronized (checksInProgress) {
             checksInProgress.forEach(task -> task.cancel(true));
             checksInProgress.clear();
+            backgroundChecks.clear();
+        }
+    }
+
+    /**
+     * Stop the checks that the user did not start, to make room for one the user starts.
+     */
+    private void cancelBackgroundChecks() {
+        synchronized (checksInProgress) {
+            for (final Future<?> task : backgroundChecks) {
+                task.cancel(true);
+                checksInProgress.remove(task);
+            }
+            backgroundChecks.clear();
         }
     }
 
@@ -120,6 +154,7 @@ public final class PylintPlugin {
 
         synchronized (checksInProgress) {
             checksInProgress.remove(task);
+            backgroundChecks.remove(task);
         }
     }
 
@@ -132,56 +167,159 @@ public final class PylintPlugin {
             return;
         }
 
+        cancelBackgroundChecks();
         final ScanFiles checkFiles = new ScanFiles(this, files);
         checkFiles.addListener(new UiFeedbackScannerListener(this));
         runAsyncCheck(checkFiles);
     }
 
-    public Map<PsiFile, List<Problem>> scanFiles(@NotNull final List<VirtualFile> files) {
-        if (files.isEmpty()) {
-            return Collections.emptyMap();
+    /**
+     * Scan again files that changed, together with the files importing them, and update the displayed results in
+     * place. Only files whose results are currently displayed are scanned, so that the results keep their scope.
+     * <p>
+     * Changes are coalesced into a single pending rescan, started {@link #RESCAN_DELAY_MS} after the last of them,
+     * or once the scan in progress, if any, completes.
+     * <p>
+     * This is expected to be called from the event thread, once the changed files were invalidated in the
+     * {@link PylintImportGraph} and the cached results of their dependents dropped.
+     *
+     * @param changedFiles the files that changed.
+     */
+    public void asyncRescanChangedFiles(@NotNull final List<VirtualFile> changedFiles) {
+        final PylintToolWindowPanel toolWindowPanel = PylintToolWindowPanel.panelFor(project);
+        if (toolWindowPanel == null) {
+            return;
+        }
+        final Set<VirtualFile> displayedFiles = new HashSet<>();
+        for (final PsiFile psiFile : toolWindowPanel.getScannedFiles()) {
+            if (psiFile.isValid() && psiFile.getVirtualFile() != null) {
+                displayedFiles.add(psiFile.getVirtualFile());
+            }
+        }
+        if (displayedFiles.isEmpty() || PylintImportGraph.getInstance(project) == null) {
+            return;
         }
 
-        try {
-            return whenFinished(runAsyncCheck(new ScanFiles(this, files)), NO_TIMEOUT).get();
-        } catch (final Throwable e) {
-            LOG.warn("ERROR scanning files", e);
-            return Collections.emptyMap();
+        synchronized (pendingRescan) {
+            pendingRescan.addAll(changedFiles);
+            rescanDisplayedFiles = displayedFiles;
+            scheduleRescan();
         }
     }
 
-    private Future<Map<PsiFile, List<Problem>>> runAsyncCheck(final ScanFiles checker) {
-        final Future<Map<PsiFile, List<Problem>>> checkFilesFuture =
-                checkInProgress(Async.executeOnPooledThread(checker));
-        checker.addListener(new ScanCompletionTracker(checkFilesFuture));
-        return checkFilesFuture;
+    private void scheduleRescan() {
+        synchronized (pendingRescan) {
+            if (nextRescan != null) {
+                nextRescan.cancel(false);
+            }
+            nextRescan = AppExecutorUtil.getAppScheduledExecutorService().schedule(this::rescanPending,
+                    RESCAN_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
     }
 
-    private class ScanCompletionTracker implements ScannerListener {
-
-        private final Future<Map<PsiFile, List<Problem>>> future;
+    @SuppressWarnings("FutureReturnValueIgnored")
+    private void rescanPending() {
+        final PylintImportGraph importGraph = PylintImportGraph.getInstance(project);
+        if (project.isDisposed() || importGraph == null) {
+            return;
+        }
+        final List<VirtualFile> changedFiles;
+        final Set<VirtualFile> displayedFiles;
+        synchronized (pendingRescan) {
+            nextRescan = null;
+            if (pendingRescan.isEmpty()) {
+                return;
+            }
+            changedFiles = new ArrayList<>(pendingRescan);
+            pendingRescan.clear();
+            displayedFiles = rescanDisplayedFiles;
+        }
 
-        ScanCompletionTracker(final Future<Map<PsiFile, List<Problem>>> future) {
-            this.future = future;
+        final Set<VirtualFile> affectedFiles = importGraph.withDependents(changedFiles);
+        affectedFiles.retainAll(displayedFiles);
+        if (affectedFiles.isEmpty()) {
+            return;
         }
 
-        @Override
-        public void scanStarting(final List<PsiFile> filesToScan) {
+        // checking for a scan in progress and starting this one must not let another scan start in between
+        synchronized (checksInProgress) {
+            if (!checksInProgress.isEmpty()) {
+                synchronized (pendingRescan) {
+                    pendingRescan.addAll(changedFiles);
+                    scheduleRescan();
+                }
+                return;
+            }
+            // the cached results of the dependents were dropped when the changed files were saved
+            LOG.debug("Scanning " + affectedFiles.size() + " files affected by " + changedFiles);
+            final ScanFiles checkFiles = new ScanFiles(this, new ArrayList<>(affectedFiles));
+            final UiFeedbackScannerListener feedback = new UiFeedbackScannerListener(this, true);
+            checkFiles.addListener(feedback);
+            final CompletableFuture<Map<PsiFile, List<Problem>>> future = runAsyncCheck(checkFiles);
+            future.whenComplete((results, error) -> {
+                if (future.isCancelled()) {
+                    feedback.discardResults();
+                }
+            });
         }
+    }
 
-        @Override
-        public void filesScanned(final int count) {
+    public Map<PsiFile, List<Problem>> scanFiles(@NotNull final List<VirtualFile> files) {
+        return scanFiles(files, null);
+    }
+
+    /**
+     * Scan the files and wait for their problems.
+     *
+     * @param listener notified of the progress of the scan, if any.
+     */
+    public Map<PsiFile, List<Problem>> scanFiles(@NotNull final List<VirtualFile> files,
+                                                 @Nullable final ScannerListener listener) {
+        if (files.isEmpty()) {
+            return Collections.emptyMap();
         }
 
-        @Override
-        public void scanCompletedSuccessfully(
-                final Map<PsiFile, List<Problem>> scanResults) {
-            checkComplete(future);
+        cancelBackgroundChecks();
+        try {
+            final ScanFiles checkFiles = new ScanFiles(this, files);
+            if (listener != null) {
+                checkFiles.addListener(listener);
+            }
+            return resultOf(runAsyncCheck(checkFiles), NO_TIMEOUT);
+        } catch (final ProcessCanceledException e) {
+            throw e;
+        } catch (final CancellationException e) {
+            // the scan was stopped: callers must not take the missing problems for a clean result
+            throw new ProcessCanceledException(e);
+        } catch (final Throwable e) {
+            LOG.warn("ERROR scanning files", e);
+            return Collections.emptyMap();
         }
+    }
 
-        @Override
-        public void scanFailedWithError(final PylintPluginException error) {
-            checkComplete(future);
+    /**
+     * Run a check the user did not start, e.g. of saved files. It is stopped like the others, and cancelled by the
+     * next scan the user starts, which its own results would otherwise compete with.
+     *
+     * @param checker the check.
+     * @return the future results of the check.
+     */
+    public CompletableFuture<Map<PsiFile, List<Problem>>> runBackgroundCheck(final ScanFiles checker) {
+        synchronized (checksInProgress) {
+            final CompletableFuture<Map<PsiFile, List<Problem>>> checkFilesFuture = runAsyncCheck(checker);
+            if (!checkFilesFuture.isDone()) {
+                backgroundChecks.add(checkFilesFuture);
+            }
+            return checkFilesFuture;
         }
     }
+
+    @SuppressWarnings("FutureReturnValueIgnored")
+    private CompletableFuture<Map<PsiFile, List<Problem>>> runAsyncCheck(final ScanFiles checker) {
+        final CompletableFuture<Map<PsiFile, List<Problem>>> checkFilesFuture =
+                checkInProgress(Async.executeOnPooledThread(checker));
+        // runs straight away if the check already completed, e.g. on cache hits only: it never stays in progress
+        checkFilesFuture.whenComplete((results, error) -> checkComplete(checkFilesFuture));
+        return checkFilesFuture;
+    }
 }
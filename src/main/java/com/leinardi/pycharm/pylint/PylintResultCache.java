@@ -0,0 +1,335 @@
+/*
+ * Copyright 2023 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.pylint;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.io.DigestUtil;
+import com.leinardi.pycharm.pylint.checker.ScannableFile;
+import com.leinardi.pycharm.pylint.plapi.Issue;
+import com.leinardi.pycharm.pylint.plapi.SeverityLevel;
+import com.leinardi.pycharm.pylint.util.Async;
+import com.leinardi.pycharm.pylint.util.Strings;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Remembers the issues Pylint reported for a file, so that a file whose contents and configuration did not change
+ * since the last scan is not linted again.
+ * <p>
+ * There is one entry per file, holding a hash of the configuration fingerprint, which includes the versions of Pylint
+ * and astroid, together with the exact contents Pylint was given: new results for a file replace the previous ones.
+ * Results that depend on other modules, e.g. {@code no-member}, are dropped when a module the file imports, directly or
+ * not, is saved, see {@link PylintFileChangeListener}.
+ * <p>
+ * The cache survives restarts: it is loaded in the background when the plugin starts, or on first use, and written to
+ * the IDE system directory when the project is closed, least recently used entries first so that loading it restores
+ * the order in which entries are evicted.
+ * <p>
+ * It holds at least {@link #MIN_ENTRIES}, and grows to fit the largest scan, so that a scan of the whole project
+ * doesn't evict its own results.
+ */
+@Service
+public final class PylintResultCache implements Disposable {
+
+    private static final Logger LOG = Logger.getInstance(PylintResultCache.class);
+
+    private static final int MIN_ENTRIES = 4096;
+    private static final int MAX_ENTRIES = 100_000;
+
+    private static final int FORMAT_VERSION = 2;
+    private static final long MAX_FILE_BYTES = 32L * 1024 * 1024;
+    private static final int NO_VALUE = -1;
+
+    private final Path cacheFile;
+    // by path, in access order, the least recently used first
+    private final Map<String, Entry> entries = new LinkedHashMap<>(MIN_ENTRIES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+            return size() > capacity;
+        }
+    };
+
+    private int capacity = MIN_ENTRIES;
+    private boolean loaded;
+    private boolean modified;
+
+    public PylintResultCache(@NotNull final Project project) {
+        this.cacheFile = PathManager.getSystemDir().resolve("pylint").resolve(project.getLocationHash() + ".cache");
+    }
+
+    @Nullable
+    public static PylintResultCache getInstance(@NotNull final Project project) {
+        return project.getService(PylintResultCache.class);
+    }
+
+    /**
+     * Build the key for the current contents of a file.
+     *
+     * @param configFingerprint as returned by {@code PylintRunner.getConfigFingerprint}.
+     * @param scannableFile     the file, as it will be given to Pylint.
+     * @return the key, or null if the results of the file can't be cached.
+     */
+    @Nullable
+    public static String keyOf(@Nullable final String configFingerprint,
+                               @NotNull final ScannableFile scannableFile) {
+        final VirtualFile virtualFile = scannableFile.getPsiFile().getVirtualFile();
+        if (configFingerprint == null || virtualFile == null) {
+            return null;
+        }
+        try {
+            final MessageDigest digest = DigestUtil.sha256();
+            digest.update(configFingerprint.getBytes(UTF_8));
+            digest.update(scannableFile.getContents());
+            return virtualFile.getPath() + '\n' + StringUtil.toHexString(digest.digest());
+        } catch (IOException e) {
+            LOG.debug("Unable to read " + scannableFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * @param key the key of the file, may be null.
+     * @return the issues of the file, or null if the file must be scanned.
+     */
+    @Nullable
+    public synchronized List<Issue> get(@Nullable final String key) {
+        if (key == null) {
+            return null;
+        }
+        ensureLoaded();
+        final int separator = key.lastIndexOf('\n');
+        final Entry entry = entries.get(key.substring(0, separator));
+        return entry != null && entry.hash.equals(key.substring(separator + 1)) ? entry.issues : null;
+    }
+
+    /**
+     * Make room for the results of a scan.
+     *
+     * @param files the number of files the scan caches results for.
+     */
+    public synchronized void reserve(final int files) {
+        capacity = Math.min(MAX_ENTRIES, Math.max(capacity, files));
+    }
+
+    public synchronized void put(@Nullable final String key, @NotNull final List<Issue> issues) {
+        if (key == null) {
+            return;
+        }
+        ensureLoaded();
+        // the path is the one of the scanned copy: callers set the current one when reusing the issues
+        final List<Issue> pathlessIssues = new ArrayList<>(issues.size());
+        issues.forEach(issue -> pathlessIssues.add(issue.copyFor(null)));
+        final int separator = key.lastIndexOf('\n');
+        entries.put(key.substring(0, separator), new Entry(key.substring(separator + 1), pathlessIssues));
+        modified = true;
+    }
+
+    /**
+     * Forget the results of files that must be scanned again even though their contents did not change, e.g.
+     * because a module they import changed.
+     *
+     * @param paths the paths of the files.
+     */
+    public synchronized void invalidate(@NotNull final Collection<String> paths) {
+        ensureLoaded();
+        for (final String path : paths) {
+            modified |= entries.remove(path) != null;
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        loaded = true;
+        modified = true;
+    }
+
+    /**
+     * Read the cache written in a previous session, without blocking the caller.
+     */
+    @SuppressWarnings("FutureReturnValueIgnored")
+    public void loadInBackground() {
+        Async.executeOnPooledThread(() -> {
+            synchronized (this) {
+                ensureLoaded();
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public synchronized void dispose() {
+        if (!modified) {
+            return;
+        }
+        try {
+            save();
+        } catch (IOException e) {
+            LOG.warn("Unable to save the Pylint result cache to " + cacheFile, e);
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        try {
+            if (Files.size(cacheFile) > MAX_FILE_BYTES) {
+                LOG.info("Ignoring oversized Pylint result cache " + cacheFile);
+                return;
+            }
+            load();
+        } catch (NoSuchFileException e) {
+            LOG.debug("No Pylint result cache in " + cacheFile);
+        } catch (IOException | RuntimeException e) {
+            // a cache from another version, or a truncated one: start over
+            LOG.info("Discarding unreadable Pylint result cache " + cacheFile, e);
+            entries.clear();
+        }
+    }
+
+    private void load() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                LOG.info("Ignoring Pylint result cache written by another version of the plugin");
+                return;
+            }
+            final int entryCount = in.readInt();
+            capacity = Math.min(MAX_ENTRIES, Math.max(capacity, entryCount));
+            // entries were written least recently used first: inserting them in order restores their recency
+            for (int i = 0; i < entryCount; i++) {
+                final String path = readString(in);
+                final String hash = readString(in);
+                if (path == null || hash == null) {
+                    throw new IOException("Missing path or hash");
+                }
+                final int issueCount = in.readInt();
+                if (issueCount < 0 || issueCount > MAX_FILE_BYTES) {
+                    throw new IOException("Invalid issue count " + issueCount);
+                }
+                final List<Issue> issues = new ArrayList<>(issueCount);
+                for (int j = 0; j < issueCount; j++) {
+                    issues.add(readIssue(in));
+                }
+                entries.put(path, new Entry(hash, issues));
+            }
+            LOG.debug("Loaded " + entryCount + " Pylint results from " + cacheFile);
+        }
+    }
+
+    private void save() throws IOException {
+        Files.createDirectories(cacheFile.getParent());
+        final Path tempFile = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(entries.size());
+            for (final Map.Entry<String, Entry> entry : entries.entrySet()) {
+                writeString(out, entry.getKey());
+                writeString(out, entry.getValue().hash);
+                out.writeInt(entry.getValue().issues.size());
+                for (final Issue issue : entry.getValue().issues) {
+                    writeIssue(out, issue);
+                }
+            }
+        }
+        Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        modified = false;
+    }
+
+    private static Issue readIssue(final DataInputStream in) throws IOException {
+        final Issue issue = new Issue();
+        final int severity = in.readByte();
+        issue.setSeverityLevel(severity == NO_VALUE ? null : SeverityLevel.values()[severity]);
+        issue.setModule(Strings.intern(readString(in)));
+        issue.setObj(readString(in));
+        issue.setLine(in.readInt());
+        issue.setColumn(in.readInt());
+        issue.setSymbol(Strings.intern(readString(in)));
+        issue.setMessage(Strings.intern(readString(in)));
+        issue.setMessageId(Strings.intern(readString(in)));
+        return issue;
+    }
+
+    private static void writeIssue(final DataOutputStream out, final Issue issue) throws IOException {
+        out.writeByte(issue.getSeverityLevel() == null ? NO_VALUE : issue.getSeverityLevel().ordinal());
+        writeString(out, issue.getModule());
+        writeString(out, issue.getObj());
+        out.writeInt(issue.getLine());
+        out.writeInt(issue.getColumn());
+        writeString(out, issue.getSymbol());
+        writeString(out, issue.getMessage());
+        writeString(out, issue.getMessageId());
+    }
+
+    @Nullable
+    private static String readString(final DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if (length == NO_VALUE) {
+            return null;
+        } else if (length < 0 || length > MAX_FILE_BYTES) {
+            throw new IOException("Invalid string length " + length);
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static void writeString(final DataOutputStream out, @Nullable final String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NO_VALUE);
+            return;
+        }
+        // DataOutputStream.writeUTF is limited to 64 KiB, which a message could exceed
+        final byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static final class Entry {
+        private final String hash;
+        private final List<Issue> issues;
+
+        private Entry(final String hash, final List<Issue> issues) {
+            this.hash = hash;
+            this.issues = issues;
+        }
+    }
+}
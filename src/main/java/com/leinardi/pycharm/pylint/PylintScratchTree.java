@@ -0,0 +1,130 @@
+/*
+ * Copyright 2023 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.pylint;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectUtil;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.util.io.DigestUtil;
+import com.leinardi.pycharm.pylint.util.TempDirProvider;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A directory tree, kept for the whole session, holding the copies of the files Pylint can't read from disk.
+ * <p>
+ * Copies keep their path relative to the project directory, so that Pylint resolves packages as it does for the real
+ * files. A copy is only written again when its contents changed, in a single write followed by an atomic move, so
+ * that a concurrent scan never reads a partial file. The tree is deleted when the project is closed.
+ */
+@Service
+public final class PylintScratchTree implements Disposable {
+
+    private static final Logger LOG = Logger.getInstance(PylintScratchTree.class);
+
+    private static final String EXTERNAL_FILES_DIR = "_external";
+
+    private final Project project;
+    private final Map<Path, String> contentHashes = new ConcurrentHashMap<>();
+    private final Set<Path> roots = ConcurrentHashMap.newKeySet();
+
+    public PylintScratchTree(@NotNull final Project project) {
+        this.project = project;
+    }
+
+    @NotNull
+    public static PylintScratchTree getInstance(@NotNull final Project project) {
+        return project.getService(PylintScratchTree.class);
+    }
+
+    /**
+     * Make the copy of a file up to date.
+     *
+     * @param psiFile  the file.
+     * @param contents the encoded contents of the file.
+     * @return the copy.
+     * @throws IOException if the copy can't be written.
+     */
+    @NotNull
+    public File write(@NotNull final PsiFile psiFile, final byte[] contents) throws IOException {
+        final Path copy = copyPathOf(psiFile);
+        final String contentHash = StringUtil.toHexString(DigestUtil.sha256().digest(contents));
+        if (contentHash.equals(contentHashes.get(copy)) && Files.isRegularFile(copy)) {
+            return copy.toFile();
+        }
+
+        Files.createDirectories(copy.getParent());
+        final Path partialCopy = Files.createTempFile(copy.getParent(), copy.getFileName().toString(), ".tmp");
+        try {
+            Files.write(partialCopy, contents);
+            Files.move(partialCopy, copy, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(partialCopy);
+        }
+        contentHashes.put(copy, contentHash);
+        return copy.toFile();
+    }
+
+    @NotNull
+    private Path copyPathOf(@NotNull final PsiFile psiFile) {
+        final Path root = Paths.get(new TempDirProvider().forPersistedPsiFile(psiFile),
+                "pylint-" + project.getLocationHash());
+        roots.add(root);
+
+        final VirtualFile projectDir = ProjectUtil.guessProjectDir(project);
+        final VirtualFile virtualFile = psiFile.getVirtualFile();
+        final VirtualFile parent = virtualFile == null ? null : virtualFile.getParent();
+        if (projectDir != null && parent != null && VfsUtilCore.isAncestor(projectDir, parent, false)) {
+            final String relativePath = VfsUtilCore.getRelativePath(parent, projectDir);
+            if (relativePath != null) {
+                return root.resolve(relativePath).resolve(psiFile.getName());
+            }
+        }
+        // outside of the project: keep copies of files with the same name apart
+        final String parentUrl = parent == null ? "" : parent.getUrl();
+        final String parentHash = StringUtil.toHexString(DigestUtil.md5().digest(parentUrl.getBytes(UTF_8)));
+        return root.resolve(EXTERNAL_FILES_DIR).resolve(parentHash).resolve(psiFile.getName());
+    }
+
+    @Override
+    public void dispose() {
+        for (final Path root : roots) {
+            if (!FileUtil.delete(root.toFile())) {
+                LOG.debug("Unable to delete the Pylint scratch tree " + root);
+            }
+        }
+        contentHashes.clear();
+    }
+}
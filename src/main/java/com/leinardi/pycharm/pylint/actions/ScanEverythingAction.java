@@ -17,7 +17,6 @@
 package com.leinardi.pycharm.pylint.actions;
 
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.project.ProjectUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.ThrowableRunnable;
 import com.leinardi.pycharm.pylint.PylintPlugin;
@@ -36,10 +35,8 @@ class ScanEverythingAction implements ThrowableRunnable<RuntimeException> {
 
     @Override
     public void run() {
-        List<VirtualFile> filesToScan;
-        // all non-excluded files of the project
-        filesToScan = VfUtil.flattenFiles(new VirtualFile[]{ProjectUtil.guessProjectDir(project)});
-        filesToScan = VfUtil.filterOnlyPythonProjectFiles(project, filesToScan);
+        // all non-excluded Python files of the project
+        List<VirtualFile> filesToScan = VfUtil.findPythonProjectFiles(project);
 
         project.getService(PylintPlugin.class).asyncScanFiles(filesToScan);
     }
@@ -19,23 +19,37 @@ package com.leinardi.pycharm.pylint.checker;
 import com.intellij.lang.annotation.AnnotationBuilder;
 import com.intellij.lang.annotation.AnnotationHolder;
 import com.intellij.lang.annotation.HighlightSeverity;
+import com.intellij.openapi.util.TextRange;
 import com.intellij.psi.PsiElement;
 import com.leinardi.pycharm.pylint.PylintBundle;
 import com.leinardi.pycharm.pylint.plapi.SeverityLevel;
+import com.leinardi.pycharm.pylint.util.Strings;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.Objects;
 
+/**
+ * A Pylint issue resolved to a range of its file.
+ * <p>
+ * A project scan keeps tens of thousands of these, so they are kept small: the target element is only remembered by
+ * its range, which doesn't keep the PSI tree of the file alive, the strings that repeat across problems are shared,
+ * and the severity and flags are packed in a single field.
+ */
 public class Problem {
-    private final PsiElement target;
-    private final SeverityLevel severityLevel;
+    private static final int SEVERITY_MASK = 0xFF;
+    private static final int NO_SEVERITY = SEVERITY_MASK;
+    private static final int AFTER_END_OF_LINE = 1 << 8;
+    private static final int SUPPRESS_ERRORS = 1 << 9;
+    private static final SeverityLevel[] SEVERITY_LEVELS = SeverityLevel.values();
+
+    private final int startOffset;
+    private final int endOffset;
     private final int line;
     private final int column;
+    private final int flags;
     private final String symbol;
     private final String message;
     private final String messageId;
-    private final boolean afterEndOfLine;
-    private final boolean suppressErrors;
 
     public Problem(@NotNull final PsiElement target,
                    @NotNull final String message,
@@ -46,30 +60,39 @@ public class Problem {
                    final String symbol,
                    final boolean afterEndOfLine,
                    final boolean suppressErrors) {
-        this.target = target;
-        this.message = message;
-        this.messageId = messageId;
-        this.severityLevel = severityLevel;
+        final TextRange textRange = target.getTextRange();
+        this.startOffset = textRange.getStartOffset();
+        this.endOffset = textRange.getEndOffset();
+        this.message = Strings.intern(message);
+        this.messageId = Strings.intern(messageId);
         this.line = line;
         this.column = column;
-        this.symbol = symbol;
-        this.afterEndOfLine = afterEndOfLine;
-        this.suppressErrors = suppressErrors;
+        this.symbol = Strings.intern(symbol);
+        this.flags = (severityLevel == null ? NO_SEVERITY : severityLevel.ordinal())
+                | (afterEndOfLine ? AFTER_END_OF_LINE : 0)
+                | (suppressErrors ? SUPPRESS_ERRORS : 0);
     }
 
     public void createAnnotation(@NotNull AnnotationHolder holder, @NotNull HighlightSeverity severity) {
         String message = PylintBundle.message("inspection.message", getMessage());
+        // the file may have been edited since the scan: stay within it
+        int fileLength = holder.getCurrentAnnotationSession().getFile().getTextLength();
         AnnotationBuilder annotation = holder
                 .newAnnotation(severity, message)
-                .range(target.getTextRange());
+                .range(new TextRange(Math.min(startOffset, fileLength), Math.min(endOffset, fileLength)));
         if (isAfterEndOfLine()) {
             annotation = annotation.afterEndOfLine();
         }
         annotation.create();
     }
 
+    public TextRange getTextRange() {
+        return new TextRange(startOffset, endOffset);
+    }
+
     public SeverityLevel severityLevel() {
-        return severityLevel;
+        final int severity = flags & SEVERITY_MASK;
+        return severity == NO_SEVERITY ? null : SEVERITY_LEVELS[severity];
     }
 
     public int line() {
@@ -93,25 +116,25 @@ public class Problem {
     }
 
     public boolean isAfterEndOfLine() {
-        return afterEndOfLine;
+        return (flags & AFTER_END_OF_LINE) != 0;
     }
 
     public boolean isSuppressErrors() {
-        return suppressErrors;
+        return (flags & SUPPRESS_ERRORS) != 0;
     }
 
     @Override
     public String toString() {
         return "Problem{" +
-                "target=" + target +
-                ", severityLevel=" + severityLevel +
+                "textRange=" + getTextRange() +
+                ", severityLevel=" + severityLevel() +
                 ", line=" + line +
                 ", column=" + column +
                 ", symbol='" + symbol + '\'' +
                 ", message='" + message + '\'' +
                 ", messageId='" + messageId + '\'' +
-                ", afterEndOfLine=" + afterEndOfLine +
-                ", suppressErrors=" + suppressErrors +
+                ", afterEndOfLine=" + isAfterEndOfLine() +
+                ", suppressErrors=" + isSuppressErrors() +
                 '}';
     }
 
@@ -124,12 +147,11 @@ public class Problem {
             return false;
         }
         Problem problem = (Problem) o;
-        return line == problem.line &&
+        return startOffset == problem.startOffset &&
+                endOffset == problem.endOffset &&
+                line == problem.line &&
                 column == problem.column &&
-                afterEndOfLine == problem.afterEndOfLine &&
-                suppressErrors == problem.suppressErrors &&
-                Objects.equals(target, problem.target) &&
-                severityLevel == problem.severityLevel &&
+                flags == problem.flags &&
                 Objects.equals(symbol, problem.symbol) &&
                 Objects.equals(message, problem.message) &&
                 Objects.equals(messageId, problem.messageId);
@@ -138,15 +160,14 @@ public class Problem {
     @Override
     public int hashCode() {
         return Objects.hash(
-                target,
-                severityLevel,
+                startOffset,
+                endOffset,
                 line,
                 column,
+                flags,
                 symbol,
                 message,
-                messageId,
-                afterEndOfLine,
-                suppressErrors
+                messageId
         );
     }
 }
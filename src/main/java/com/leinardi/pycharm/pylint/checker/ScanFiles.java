@@ -19,27 +19,46 @@ package com.leinardi.pycharm.pylint.checker;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.diagnostic.Logger;
-import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.roots.ProjectFileIndex;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.openapi.vfs.VirtualFileVisitor;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiManager;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.leinardi.pycharm.pylint.PylintConfigService;
 import com.leinardi.pycharm.pylint.PylintPlugin;
+import com.leinardi.pycharm.pylint.PylintResultCache;
 import com.leinardi.pycharm.pylint.exception.PylintPluginException;
 import com.leinardi.pycharm.pylint.plapi.Issue;
+import com.leinardi.pycharm.pylint.plapi.IssuePaths;
+import com.leinardi.pycharm.pylint.plapi.ModuleSettings;
 import com.leinardi.pycharm.pylint.plapi.ProcessResultsThread;
 import com.leinardi.pycharm.pylint.plapi.PylintRunner;
 import com.leinardi.pycharm.pylint.util.Notifications;
+import com.leinardi.pycharm.pylint.util.VfUtil;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.InterruptedIOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import static java.util.Collections.emptyMap;
 
@@ -47,34 +66,93 @@ public class ScanFiles implements Callable<Map<PsiFile, List<Problem>>> {
 
     private static final Logger LOG = Logger.getInstance(ScanFiles.class);
 
-    private final List<PsiFile> files;
-    private final Set<ScannerListener> listeners = new HashSet<>();
+    private static final long MIN_SHARD_BYTES = 64 * 1024;
+    private static final int MAX_SHARD_FILES = 100;
+    private static final int TAB_WIDTH = 4;
+    private static final int RESOLVE_CHUNK_FILES = 500;
+
+    private static final ExecutorService RESULTS_EXECUTOR = AppExecutorUtil.createBoundedApplicationPoolExecutor(
+            "Pylint Results", Runtime.getRuntime().availableProcessors());
+
+    private final List<VirtualFile> virtualFiles;
+    // fired from the shard and results threads while listeners may still be added
+    private final Set<ScannerListener> listeners = new CopyOnWriteArraySet<>();
     private final PylintPlugin plugin;
+    private int maxWorkers = Integer.MAX_VALUE;
 
     public ScanFiles(@NotNull final PylintPlugin pylintPlugin,
                      @NotNull final List<VirtualFile> virtualFiles) {
         this.plugin = pylintPlugin;
+        this.virtualFiles = new ArrayList<>(virtualFiles);
+    }
 
-        files = findAllFilesFor(virtualFiles);
+    /**
+     * Run fewer Pylint processes at once than the settings allow, e.g. for a scan in the background.
+     *
+     * @param maxWorkers the maximum number of Pylint processes.
+     */
+    public void setMaxWorkers(final int maxWorkers) {
+        this.maxWorkers = maxWorkers;
     }
 
-    private List<PsiFile> findAllFilesFor(@NotNull final List<VirtualFile> virtualFiles) {
-        final List<PsiFile> childFiles = new ArrayList<>();
-        final PsiManager psiManager = PsiManager.getInstance(this.plugin.getProject());
-        for (final VirtualFile virtualFile : virtualFiles) {
-            childFiles.addAll(buildFilesList(psiManager, virtualFile));
+    /**
+     * Resolve the files to scan, including the files under the given directories, to PSI files. Each file is
+     * resolved once, in chunks of non-blocking read actions, so that resolving a large project doesn't hold up typing.
+     */
+    private List<PsiFile> findAllFilesFor(@NotNull final List<VirtualFile> filesAndDirectories) {
+        final Set<VirtualFile> uniqueFiles = new LinkedHashSet<>();
+        for (final VirtualFile virtualFile : filesAndDirectories) {
+            if (virtualFile.isDirectory()) {
+                uniqueFiles.addAll(inReadAction(() -> VfUtil.getAllSubFiles(virtualFile)));
+            } else {
+                uniqueFiles.add(virtualFile);
+            }
         }
-        return childFiles;
+
+        final PsiManager psiManager = PsiManager.getInstance(plugin.getProject());
+        final List<VirtualFile> filesToResolve = new ArrayList<>(uniqueFiles);
+        final List<PsiFile> psiFiles = new ArrayList<>(filesToResolve.size());
+        for (int start = 0; start < filesToResolve.size(); start += RESOLVE_CHUNK_FILES) {
+            final List<VirtualFile> chunk = filesToResolve.subList(start,
+                    Math.min(filesToResolve.size(), start + RESOLVE_CHUNK_FILES));
+            psiFiles.addAll(inReadAction(() -> {
+                final List<PsiFile> resolved = new ArrayList<>(chunk.size());
+                for (final VirtualFile virtualFile : chunk) {
+                    final PsiFile psiFile = virtualFile.isValid() ? psiManager.findFile(virtualFile) : null;
+                    if (psiFile != null) {
+                        resolved.add(psiFile);
+                    }
+                }
+                return resolved;
+            }));
+        }
+        return psiFiles;
+    }
+
+    /**
+     * Run a computation in a read action that gives way to write actions, unless the caller can already read.
+     */
+    static <T> T inReadAction(final Supplier<T> computation) {
+        if (ApplicationManager.getApplication().isReadAccessAllowed()) {
+            // e.g. the event thread: a non-blocking read action would wait for the lock to be released
+            return computation.get();
+        }
+        return ReadAction.nonBlocking(computation::get).executeSynchronously();
     }
 
     @Override
     public final Map<PsiFile, List<Problem>> call() {
         try {
+            final List<PsiFile> files = findAllFilesFor(virtualFiles);
             fireCheckStarting(files);
-            return scanCompletedSuccessfully(checkFiles(new HashSet<>(files)));
+            return scanCompletedSuccessfully(checkFiles(new LinkedHashSet<>(files)));
         } catch (final InterruptedIOException | InterruptedException e) {
             LOG.debug("Scan cancelled by PyCharm", e);
             return scanCompletedSuccessfully(emptyMap());
+        } catch (final ProcessCanceledException e) {
+            // the Pylint processes were stopped already: just let the listeners know the scan is over
+            LOG.debug("Scan cancelled by PyCharm");
+            return scanCompletedSuccessfully(emptyMap());
         } catch (final PylintPluginException e) {
             LOG.warn("An error occurred while scanning a file.", e);
             return scanFailedWithError(e);
@@ -84,36 +162,249 @@ public class ScanFiles implements Callable<Map<PsiFile, List<Problem>>> {
         }
     }
 
-    private Map<String, PsiFile> mapFilesToElements(final List<ScannableFile> filesToScan) {
-        final Map<String, PsiFile> filePathsToElements = new HashMap<>();
+    private IssuePaths mapFilesToElements(final List<ScannableFile> filesToScan) {
+        final IssuePaths issuePaths = new IssuePaths(plugin.getProject().getBasePath());
         for (ScannableFile scannableFile : filesToScan) {
-            filePathsToElements.put(scannableFile.getAbsolutePath(), scannableFile.getPsiFile());
+            issuePaths.add(scannableFile.getAbsolutePath(), scannableFile.getPsiFile());
         }
-        return filePathsToElements;
+        return issuePaths;
     }
 
     private Map<PsiFile, List<Problem>> checkFiles(final Set<PsiFile> filesToScan)
             throws InterruptedIOException, InterruptedException {
-        final List<ScannableFile> scannableFiles = new ArrayList<>();
+        final List<ScannableFile> scannableFiles = ScannableFile.createAndValidate(filesToScan, plugin);
+        fireFilesScanned(filesToScan.size() - scannableFiles.size());
+        return scan(scannableFiles);
+    }
+
+    /**
+     * Group the files by the settings of their module, each group to be scanned by Pylint processes of its own.
+     */
+    private Map<ModuleSettings, List<ScannableFile>> partitionByModule(final List<ScannableFile> filesToScan) {
+        return inReadAction(() -> {
+            final ProjectFileIndex projectFileIndex = ProjectFileIndex.getInstance(plugin.getProject());
+            final Map<VirtualFile, ModuleSettings> settingsByContentRoot = new HashMap<>();
+            final Map<ModuleSettings, List<ScannableFile>> partitions = new LinkedHashMap<>();
+            for (final ScannableFile scannableFile : filesToScan) {
+                final VirtualFile virtualFile = scannableFile.getPsiFile().getVirtualFile();
+                final VirtualFile contentRoot = virtualFile == null || !virtualFile.isValid()
+                        ? null : projectFileIndex.getContentRootForFile(virtualFile);
+                final ModuleSettings settings = contentRoot == null
+                        ? ModuleSettings.NONE
+                        : settingsByContentRoot.computeIfAbsent(contentRoot,
+                        root -> ModuleSettings.of(plugin.getProject(), root));
+                partitions.computeIfAbsent(settings, key -> new ArrayList<>()).add(scannableFile);
+            }
+            return partitions;
+        });
+    }
+
+    private Map<PsiFile, List<Problem>> scan(final List<ScannableFile> filesToScan)
+            throws InterruptedIOException, InterruptedException {
+        final PylintResultCache resultCache = PylintResultCache.getInstance(plugin.getProject());
+        final Map<ScannableFile, String> cacheKeys = new HashMap<>();
+        final List<ScannableFile> cachedFiles = new ArrayList<>();
+        final List<Issue> cachedIssues = new ArrayList<>();
+        final Map<ModuleSettings, List<ScannableFile>> filesToLint = new LinkedHashMap<>();
+        int misses = 0;
+        for (final Map.Entry<ModuleSettings, List<ScannableFile>> partition
+                : partitionByModule(filesToScan).entrySet()) {
+            final String configFingerprint = resultCache == null
+                    ? null : PylintRunner.getConfigFingerprint(plugin.getProject(), partition.getKey());
+            for (final ScannableFile scannableFile : partition.getValue()) {
+                final String cacheKey = configFingerprint == null
+                        ? null : PylintResultCache.keyOf(configFingerprint, scannableFile);
+                final List<Issue> issues = cacheKey == null ? null : resultCache.get(cacheKey);
+                if (issues == null) {
+                    cacheKeys.put(scannableFile, cacheKey);
+                    filesToLint.computeIfAbsent(partition.getKey(), key -> new ArrayList<>()).add(scannableFile);
+                    misses++;
+                } else {
+                    cachedFiles.add(scannableFile);
+                    issues.forEach(issue -> cachedIssues.add(issue.copyFor(scannableFile.getAbsolutePath())));
+                }
+            }
+        }
+        LOG.debug("Pylint result cache: " + cachedFiles.size() + " hits, " + misses + " misses");
+        if (resultCache != null) {
+            resultCache.reserve(filesToScan.size());
+        }
+
+        final Map<PsiFile, List<Problem>> problems = new HashMap<>();
+        if (!cachedFiles.isEmpty()) {
+            final ProblemCollector collector = new ProblemCollector(mapFilesToElements(cachedFiles));
+            cachedIssues.forEach(collector);
+            problems.putAll(collector.finish());
+            fireFilesScanned(cachedFiles.size());
+        }
+        if (!filesToLint.isEmpty()) {
+            problems.putAll(lint(filesToLint, resultCache, cacheKeys));
+        }
+        return problems;
+    }
+
+    /**
+     * Scan the files of each module with its own settings. The shards of all the modules share the same workers, so
+     * that a scan of several modules keeps them all busy.
+     */
+    private Map<PsiFile, List<Problem>> lint(final Map<ModuleSettings, List<ScannableFile>> partitions,
+                                             @Nullable final PylintResultCache resultCache,
+                                             final Map<ScannableFile, String> cacheKeys)
+            throws InterruptedIOException, InterruptedException {
+        final int workers = scanWorkers();
+        final List<Shard> shards = new ArrayList<>();
+        int fileCount = 0;
+        for (final Map.Entry<ModuleSettings, List<ScannableFile>> partition : partitions.entrySet()) {
+            final ModuleSettings settings = partition.getKey();
+            // the unsaved editors, e.g. those the annotator batched, are scanned together in a single run
+            final List<ScannableFile> savedFiles = new ArrayList<>();
+            final List<ScannableFile> unsavedFiles = new ArrayList<>();
+            for (final ScannableFile scannableFile : partition.getValue()) {
+                if (scannableFile.getUnsavedContents() != null) {
+                    unsavedFiles.add(scannableFile);
+                } else {
+                    savedFiles.add(scannableFile);
+                }
+            }
+            if (!unsavedFiles.isEmpty()) {
+                shards.add(new Shard(settings, unsavedFiles));
+            }
+            if (!savedFiles.isEmpty()) {
+                shard(savedFiles, workers).forEach(files -> shards.add(new Shard(settings, files)));
+            }
+            fileCount += partition.getValue().size();
+        }
+        if (shards.size() == 1) {
+            return scanShard(shards.get(0), resultCache, cacheKeys);
+        }
+
+        LOG.debug("Scanning " + fileCount + " files of " + partitions.size() + " modules in " + shards.size()
+                + " shards");
+        final ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor("Pylint Scan", workers);
+        final List<Future<Map<PsiFile, List<Problem>>>> shardResults = new ArrayList<>();
         try {
-            scannableFiles.addAll(ScannableFile.createAndValidate(filesToScan, plugin));
-            return scan(scannableFiles);
+            for (final Shard shard : shards) {
+                shardResults.add(executor.submit(() -> scanShard(shard, resultCache, cacheKeys)));
+            }
+            final Map<PsiFile, List<Problem>> problems = new HashMap<>();
+            for (final Future<Map<PsiFile, List<Problem>>> shardResult : shardResults) {
+                problems.putAll(resultOf(shardResult));
+            }
+            return problems;
         } finally {
-            scannableFiles.forEach(ScannableFile::deleteIfRequired);
+            shardResults.forEach(shardResult -> shardResult.cancel(true));
         }
     }
 
-    private Map<PsiFile, List<Problem>> scan(final List<ScannableFile> filesToScan)
+    private Map<PsiFile, List<Problem>> scanShard(final Shard shard,
+                                                  @Nullable final PylintResultCache resultCache,
+                                                  final Map<ScannableFile, String> cacheKeys)
             throws InterruptedIOException, InterruptedException {
-        Map<String, PsiFile> fileNamesToPsiFiles = mapFilesToElements(filesToScan);
-        List<Issue> errors = PylintRunner.scan(plugin.getProject(), fileNamesToPsiFiles.keySet());
-        String baseDir = plugin.getProject().getBasePath();
-        int tabWidth = 4;
-        final ProcessResultsThread findThread = new ProcessResultsThread(false, tabWidth, baseDir,
-                errors, fileNamesToPsiFiles);
+        final List<ScannableFile> filesToScan = shard.files;
+        final IssuePaths issuePaths = mapFilesToElements(filesToScan);
+        final ProblemCollector collector = new ProblemCollector(issuePaths);
+        final Map<PsiFile, List<Issue>> issuesByFile = new HashMap<>();
+        final Consumer<Issue> issueConsumer = issue -> {
+            final PsiFile psiFile = issuePaths.find(issue.getPath());
+            if (psiFile != null) {
+                issuesByFile.computeIfAbsent(psiFile, key -> new ArrayList<>()).add(issue);
+            }
+            collector.accept(issue);
+        };
+        final Set<String> paths = new HashSet<>();
+        final Map<String, String> unsavedContents = new HashMap<>();
+        for (final ScannableFile scannableFile : filesToScan) {
+            paths.add(scannableFile.getAbsolutePath());
+            if (scannableFile.getUnsavedContents() != null) {
+                unsavedContents.put(scannableFile.getAbsolutePath(), scannableFile.getUnsavedContents());
+            }
+        }
+        final boolean scanned = PylintRunner.scan(plugin.getProject(), paths, unsavedContents, shard.settings,
+                issueConsumer);
+        final Map<PsiFile, List<Problem>> problems = collector.finish();
+        fireFilesScanned(filesToScan.size());
 
-        ReadAction.run(findThread);
-        return findThread.getProblems();
+        // an issue that can't be matched to its file could belong to any of them: don't cache an incomplete result
+        if (scanned && resultCache != null && collector.unmatchedIssues == 0) {
+            for (final ScannableFile scannableFile : filesToScan) {
+                resultCache.put(cacheKeys.get(scannableFile),
+                        issuesByFile.getOrDefault(scannableFile.getPsiFile(), Collections.emptyList()));
+            }
+        }
+        return problems;
+    }
+
+    private static <T> T resultOf(final Future<T> result) throws InterruptedIOException, InterruptedException {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof InterruptedIOException) {
+                throw (InterruptedIOException) cause;
+            } else if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new PylintPluginException("An error occurred while scanning a shard of files.", cause);
+        }
+    }
+
+    private int scanWorkers() {
+        final PylintConfigService pylintConfigService = PylintConfigService.getInstance(plugin.getProject());
+        final int workers = pylintConfigService == null ? 1 : pylintConfigService.getScanWorkers();
+        return Math.max(1, Math.min(maxWorkers, workers));
+    }
+
+    /**
+     * Split the files into shards, to be scanned by separate Pylint processes.
+     * <p>
+     * Small scans stay in one shard, as a process per shard has its own start-up and import cost. Larger ones get up
+     * to one shard per worker, more if that would put over {@link #MAX_SHARD_FILES} on a command line. Files are
+     * spread with a largest-first greedy fill, so that the shards end up with roughly the same number of bytes.
+     * <p>
+     * Checks across files, like {@code duplicate-code}, only see files in the same shard.
+     */
+    private static List<List<ScannableFile>> shard(final List<ScannableFile> files, final int workers) {
+        if (files.size() <= 1 || (workers <= 1 && files.size() <= MAX_SHARD_FILES)) {
+            return Collections.singletonList(files);
+        }
+
+        final Map<ScannableFile, Long> sizes = new HashMap<>();
+        long totalBytes = 0;
+        for (final ScannableFile file : files) {
+            final long size = file.getFile().length();
+            sizes.put(file, size);
+            totalBytes += size;
+        }
+
+        final int byBytes = (int) Math.max(1, Math.min(workers, totalBytes / MIN_SHARD_BYTES));
+        final int byCount = (files.size() + MAX_SHARD_FILES - 1) / MAX_SHARD_FILES;
+        final int shardCount = Math.min(files.size(), Math.max(byBytes, byCount));
+        if (shardCount <= 1) {
+            return Collections.singletonList(files);
+        }
+
+        final List<ScannableFile> largestFirst = new ArrayList<>(files);
+        largestFirst.sort(Comparator.comparing(sizes::get, Comparator.reverseOrder()));
+
+        final long[] shardBytes = new long[shardCount];
+        final PriorityQueue<Integer> lightestFirst =
+                new PriorityQueue<>(shardCount, Comparator.<Integer>comparingLong(index -> shardBytes[index]));
+        final List<List<ScannableFile>> shards = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new ArrayList<>());
+            lightestFirst.add(i);
+        }
+        for (final ScannableFile file : largestFirst) {
+            final int index = lightestFirst.remove();
+            shards.get(index).add(file);
+            shardBytes[index] += sizes.get(file);
+            lightestFirst.add(index);
+        }
+        return shards;
     }
 
     private Map<PsiFile, List<Problem>> scanFailedWithError(final PylintPluginException e) {
@@ -136,6 +427,16 @@ public class ScanFiles implements Callable<Map<PsiFile, List<Problem>>> {
         listeners.forEach(listener -> listener.scanStarting(filesToScan));
     }
 
+    private void fireFilesScanned(final int count) {
+        if (count > 0) {
+            listeners.forEach(listener -> listener.filesScanned(count));
+        }
+    }
+
+    private void fireProblemsFound(final PsiFile file, final List<Problem> problems) {
+        listeners.forEach(listener -> listener.problemsFound(file, problems));
+    }
+
     private void fireScanCompletedSuccessfully(
             final Map<PsiFile, List<Problem>> fileResults) {
         listeners.forEach(listener -> listener.scanCompletedSuccessfully(fileResults));
@@ -145,38 +446,108 @@ public class ScanFiles implements Callable<Map<PsiFile, List<Problem>>> {
         listeners.forEach(listener -> listener.scanFailedWithError(error));
     }
 
-    private List<PsiFile> buildFilesList(final PsiManager psiManager, final VirtualFile virtualFile) {
-        final List<PsiFile> allChildFiles = new ArrayList<>();
-        ApplicationManager.getApplication().runReadAction(() -> {
-            final FindChildFiles visitor = new FindChildFiles(virtualFile, psiManager);
-            VfsUtilCore.visitChildrenRecursively(virtualFile, visitor);
-            allChildFiles.addAll(visitor.locatedFiles);
-        });
-        return allChildFiles;
+    /**
+     * Files scanned together by one Pylint process.
+     */
+    private static final class Shard {
+        final ModuleSettings settings;
+        final List<ScannableFile> files;
+
+        Shard(final ModuleSettings settings, final List<ScannableFile> files) {
+            this.settings = settings;
+            this.files = files;
+        }
     }
 
-    private static class FindChildFiles extends VirtualFileVisitor {
+    /**
+     * Turns issues into problems while Pylint is still running. Pylint reports the messages of a module together, so
+     * issues are processed a file at a time and each file is handed to the listeners as soon as it is done.
+     * <p>
+     * Files are processed in parallel, each in a read action of its own that gives way to write actions, so that
+     * typing isn't held up by the results of a large scan.
+     */
+    private final class ProblemCollector implements Consumer<Issue> {
 
-        private final VirtualFile virtualFile;
-        private final PsiManager psiManager;
+        private final IssuePaths issuePaths;
+        private final List<Issue> batch = new ArrayList<>();
+        private final List<Future<?>> pending = new ArrayList<>();
+        private final Map<PsiFile, List<Problem>> problems = new HashMap<>();
+        private String batchPath;
 
-        final List<PsiFile> locatedFiles = new ArrayList<>();
+        int unmatchedIssues;
 
-        FindChildFiles(final VirtualFile virtualFile, final PsiManager psiManager) {
-            this.virtualFile = virtualFile;
-            this.psiManager = psiManager;
+        ProblemCollector(final IssuePaths issuePaths) {
+            this.issuePaths = issuePaths;
         }
 
         @Override
-        public boolean visitFile(@NotNull final VirtualFile file) {
-            if (!file.isDirectory()) {
-                final PsiFile psiFile = psiManager.findFile(virtualFile);
-                if (psiFile != null) {
-                    locatedFiles.add(psiFile);
+        public void accept(final Issue issue) {
+            if (!Objects.equals(batchPath, issue.getPath())) {
+                flush();
+                batchPath = issue.getPath();
+            }
+            batch.add(issue);
+        }
+
+        /**
+         * Wait for all the files to be processed.
+         *
+         * @return the problems of each file.
+         */
+        Map<PsiFile, List<Problem>> finish() throws InterruptedIOException, InterruptedException {
+            flush();
+            try {
+                for (final Future<?> fileResult : pending) {
+                    resultOf(fileResult);
+                }
+            } finally {
+                pending.forEach(fileResult -> fileResult.cancel(true));
+            }
+            synchronized (problems) {
+                if (unmatchedIssues > 0) {
+                    LOG.warn("Pylint reported " + unmatchedIssues + " issues for files that were not scanned");
                 }
+                return new HashMap<>(problems);
             }
-            return true;
         }
-    }
 
+        private void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            final List<Issue> fileIssues = new ArrayList<>(batch);
+            batch.clear();
+
+            if (ApplicationManager.getApplication().isReadAccessAllowed()) {
+                // e.g. a batch inspection: a non-blocking read action would wait for this thread to release the lock
+                merge(processResults(fileIssues));
+                return;
+            }
+            pending.add(RESULTS_EXECUTOR.submit(() -> {
+                merge(ReadAction.nonBlocking(() -> processResults(fileIssues)).executeSynchronously());
+                return null;
+            }));
+        }
+
+        private ProcessResultsThread processResults(final List<Issue> fileIssues) {
+            // a new instance on each attempt, as the read action is restarted from scratch after a write action
+            final ProcessResultsThread findThread = new ProcessResultsThread(false, TAB_WIDTH, fileIssues, issuePaths);
+            findThread.run();
+            return findThread;
+        }
+
+        private void merge(final ProcessResultsThread findThread) {
+            synchronized (problems) {
+                unmatchedIssues += findThread.getUnmatchedIssues();
+            }
+            findThread.getProblems().forEach((file, fileProblems) -> {
+                synchronized (problems) {
+                    // a module can be reported in several runs, e.g. when cross-file checks come last
+                    final List<Problem> allProblems = problems.computeIfAbsent(file, key -> new ArrayList<>());
+                    allProblems.addAll(fileProblems);
+                    fireProblemsFound(file, new ArrayList<>(allProblems));
+                }
+            });
+        }
+    }
 }
@@ -20,32 +20,26 @@ import com.intellij.application.options.CodeStyle;
 import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.fileEditor.FileDocumentManager;
-import com.intellij.openapi.project.ProjectUtil;
-import com.intellij.openapi.util.ThrowableComputable;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiFile;
 import com.leinardi.pycharm.pylint.PylintPlugin;
-import com.leinardi.pycharm.pylint.util.TempDirProvider;
+import com.leinardi.pycharm.pylint.PylintScratchTree;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.function.IntUnaryOperator;
 import java.util.stream.Collectors;
 
 import static java.util.Optional.ofNullable;
@@ -56,19 +50,18 @@ import static java.util.Optional.ofNullable;
 public class ScannableFile {
     private static final Logger LOG = Logger.getInstance(ScannableFile.class);
 
-    private static final String TEMPFILE_DIR_PREFIX = "csi-";
-
-    private static final AtomicInteger TEMP_FILE_SOURCE = new AtomicInteger();
-    private static final int MAX_TEMP_FILE_SUFFIX = 999;
+    private static final int CREATE_CHUNK_FILES = 100;
 
     private final File realFile;
-    private final File baseTempDir;
+    private final boolean scratchCopy;
     private final PsiFile psiFile;
+    private final String unsavedContents;
 
     /**
      * Create a new scannable file from a PSI file.
      * <p>
-     * If required this will create a temporary copy of the file.
+     * The unsaved contents of a file that exists on disk are kept in memory, to be piped to Pylint. If the file does
+     * not exist on disk this will update its copy in the project's {@link PylintScratchTree}.
      *
      * @param psiFile the psiFile to create the file from.
      * @throws IOException if file creation is required and fails.
@@ -76,24 +69,38 @@ public class ScannableFile {
     public ScannableFile(@NotNull final PsiFile psiFile) throws IOException {
         this.psiFile = psiFile;
 
-        if (!existsOnFilesystem(psiFile) || documentIsModifiedAndUnsaved(psiFile)) {
-            baseTempDir = prepareBaseTmpDirFor(psiFile);
-            realFile = createTemporaryFileFor(psiFile, baseTempDir);
+        if (!existsOnFilesystem(psiFile)) {
+            final byte[] contents = StringUtil.convertLineSeparators(psiFile.getText(), lineSeparatorOf(psiFile))
+                    .getBytes(charSetOf(psiFile));
+            realFile = PylintScratchTree.getInstance(psiFile.getProject()).write(psiFile, contents);
+            scratchCopy = true;
+            unsavedContents = null;
+        } else if (documentIsModifiedAndUnsaved(psiFile)) {
+            realFile = new File(pathOf(psiFile));
+            scratchCopy = false;
+            unsavedContents = StringUtil.convertLineSeparators(psiFile.getText(), lineSeparatorOf(psiFile));
         } else {
-            baseTempDir = null;
             realFile = new File(pathOf(psiFile));
+            scratchCopy = false;
+            unsavedContents = null;
         }
     }
 
     public static List<ScannableFile> createAndValidate(@NotNull final Collection<PsiFile> psiFiles,
                                                         @NotNull final PylintPlugin plugin/*,
                                                         @Nullable final Module module*/) {
-        ThrowableComputable<List<ScannableFile>, RuntimeException> action = () -> psiFiles.stream()
-                .filter(currentFile -> PsiFileValidator.isScannable(currentFile, plugin.getProject()))
-                .map(ScannableFile::create)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toCollection(CopyOnWriteArrayList::new));
-        return ReadAction.compute(action);
+        // in chunks, each in a read action of its own, so that editing isn't held up by a large scan
+        final List<PsiFile> files = new ArrayList<>(psiFiles);
+        final List<ScannableFile> scannableFiles = new CopyOnWriteArrayList<>();
+        for (int start = 0; start < files.size(); start += CREATE_CHUNK_FILES) {
+            final List<PsiFile> chunk = files.subList(start, Math.min(files.size(), start + CREATE_CHUNK_FILES));
+            scannableFiles.addAll(ScanFiles.inReadAction(() -> chunk.stream()
+                    .filter(currentFile -> PsiFileValidator.isScannable(currentFile, plugin.getProject()))
+                    .map(ScannableFile::create)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList())));
+        }
+        return scannableFiles;
     }
 
     @Nullable
@@ -109,7 +116,7 @@ public class ScannableFile {
 
             return fileAction.getFile();
         } catch (IOException e) {
-            LOG.warn("Failure when creating temporary file", e);
+            LOG.warn("Failure when creating scratch copy", e);
             return null;
         }
     }
@@ -121,96 +128,6 @@ public class ScannableFile {
                         new IllegalStateException("PSIFile " + "does not have associated virtual file: " + file));
     }
 
-    private File createTemporaryFileFor(@NotNull final PsiFile file,
-                                        //                                        @Nullable final Module module,
-                                        @NotNull final File tempDir) throws IOException {
-        final File temporaryFile = new File(parentDirFor(file, tempDir), file.getName());
-        temporaryFile.deleteOnExit();
-
-        writeContentsToFile(file, temporaryFile);
-
-        return temporaryFile;
-    }
-
-    private File parentDirFor(@NotNull final PsiFile file,
-                              //                              @Nullable final Module module,
-                              @NotNull final File baseTmpDir) {
-        File tmpDirForFile = relativePathToProjectRoot(file, baseTmpDir);
-
-        //        if (tmpDirForFile == null && module != null) {
-        //            tmpDirForFile = relativePathToModuleContentRoots(file, module, baseTmpDir);
-        //        }
-        //
-        //        if (tmpDirForFile == null && file instanceof PsiJavaFile) {
-        //            tmpDirForFile = classPackagePath((PsiJavaFile) file, baseTmpDir);
-        //        }
-
-        if (tmpDirForFile == null) {
-            tmpDirForFile = baseTmpDir;
-        }
-
-        //noinspection ResultOfMethodCallIgnored
-        tmpDirForFile.mkdirs();
-
-        return tmpDirForFile;
-    }
-
-    //    @NotNull
-    //    private File classPackagePath(final @NotNull PsiJavaFile file, final @NotNull File baseTmpDir) {
-    //        final String packagePath = file.getPackageName().replaceAll("\\.", Matcher.quoteReplacement(File
-    //        .separator));
-    //
-    //        return new File(baseTmpDir.getAbsolutePath() + File.separator + packagePath);
-    //    }
-
-    private File relativePathToProjectRoot(final @NotNull PsiFile file, final @NotNull File baseTmpDir) {
-        if (file.getParent() != null) {
-            final String baseDirUrl = ProjectUtil.guessProjectDir(file.getProject()).getUrl();
-
-            final String parentUrl = file.getParent().getVirtualFile().getUrl();
-            if (parentUrl.startsWith(baseDirUrl)) {
-                return new File(baseTmpDir.getAbsolutePath() + parentUrl.substring(baseDirUrl.length()));
-            }
-        }
-        return null;
-    }
-
-    //    private File relativePathToModuleContentRoots(final @NotNull PsiFile file, final @NotNull Module module, final
-    //    @NotNull File baseTmpDir) {
-    //        if (file.getParent() != null) {
-    //            final String parentUrl = file.getParent().getVirtualFile().getUrl();
-    //            for (String moduleSourceRoot : ModuleRootManager.getInstance(module).getContentRootUrls()) {
-    //                if (parentUrl.startsWith(moduleSourceRoot)) {
-    //                    return new File(baseTmpDir.getAbsolutePath() + parentUrl.substring(moduleSourceRoot.length
-    //                    ()));
-    //                }
-    //            }
-    //        }
-    //        return null;
-    //    }
-
-    private File prepareBaseTmpDirFor(final PsiFile tempPsiFile) {
-        final File baseTmpDir = new File(new TempDirProvider().forPersistedPsiFile(tempPsiFile),
-                tempFileDirectoryName());
-        baseTmpDir.deleteOnExit();
-        return baseTmpDir;
-    }
-
-    private String tempFileDirectoryName() {
-        return String.format("%s%03d", TEMPFILE_DIR_PREFIX, TEMP_FILE_SOURCE
-                .getAndUpdate(incrementUntil(MAX_TEMP_FILE_SUFFIX)));
-    }
-
-    @NotNull
-    private IntUnaryOperator incrementUntil(final int maxValue) {
-        return operand -> {
-            if (operand >= maxValue) {
-                return 0;
-            }
-            return operand + 1;
-        };
-    }
-
     private boolean existsOnFilesystem(@NotNull final PsiFile file) {
         return virtualFileOf(file).map(virtualFile -> LocalFileSystem.getInstance().exists(virtualFile)).orElse(false);
     }
@@ -221,19 +138,9 @@ public class ScannableFile {
                 .map(fileDocumentManager::isDocumentUnsaved).orElse(false);
     }
 
-    private void writeContentsToFile(final PsiFile file, final File outFile) throws IOException {
-        final String lineSeparator = CodeStyle.getSettings(file.getProject()).getLineSeparator();
-
-        final Writer tempFileOut = writerTo(outFile, charSetOf(file));
-        for (final char character : file.getText().toCharArray()) {
-            if (character == '\n') { // PyCharm uses \n internally
-                tempFileOut.write(lineSeparator);
-            } else {
-                tempFileOut.write(character);
-            }
-        }
-        tempFileOut.flush();
-        tempFileOut.close();
+    @NotNull
+    private String lineSeparatorOf(final PsiFile file) {
+        return CodeStyle.getSettings(file.getProject()).getLineSeparator();
     }
 
     @NotNull
@@ -245,43 +152,31 @@ public class ScannableFile {
         return ofNullable(file.getVirtualFile());
     }
 
-    @NotNull
-    private Writer writerTo(final File outFile, final Charset charset) throws FileNotFoundException {
-        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outFile), charset.newEncoder()));
-    }
-
     public File getFile() {
         return realFile;
     }
 
-    public static void deleteIfRequired(@Nullable final ScannableFile scannableFile) {
-        if (scannableFile != null) {
-            scannableFile.deleteFileIfRequired();
-        }
-    }
-
-    private void deleteFileIfRequired() {
-        if (baseTempDir != null && baseTempDir.getName().startsWith(TEMPFILE_DIR_PREFIX)) {
-            delete(baseTempDir);
-        }
+    /**
+     * Get the unsaved contents of the file, to be scanned instead of the file on disk.
+     *
+     * @return the contents, or null if the file on disk is up to date.
+     */
+    @Nullable
+    public String getUnsavedContents() {
+        return unsavedContents;
     }
 
-    private void delete(@NotNull final File file) {
-        if (!file.exists()) {
-            return;
-        }
-
-        if (file.isDirectory()) {
-            final File[] files = file.listFiles();
-            if (files != null) {
-                for (File child : files) {
-                    delete(child);
-                }
-            }
+    /**
+     * Get the exact contents Pylint will scan.
+     *
+     * @return the unsaved contents, encoded in UTF-8 as they are sent to Pylint, or the bytes of the file.
+     * @throws IOException if the file can't be read.
+     */
+    public byte[] getContents() throws IOException {
+        if (unsavedContents != null) {
+            return unsavedContents.getBytes(StandardCharsets.UTF_8);
         }
-
-        //noinspection ResultOfMethodCallIgnored
-        file.delete();
+        return Files.readAllBytes(realFile.toPath());
     }
 
     public String getAbsolutePath() {
@@ -294,6 +189,7 @@ public class ScannableFile {
 
     @Override
     public String toString() {
-        return String.format("[ScannableFile: file=%s; temporary=%s]", realFile.toString(), baseTempDir != null);
+        return String.format("[ScannableFile: file=%s; scratch=%s; unsaved=%s]", realFile.toString(),
+                scratchCopy, unsavedContents != null);
     }
 }
@@ -28,6 +28,14 @@ public interface ScannerListener {
 
     void filesScanned(int count);
 
+    /**
+     * Called, possibly from several threads, as soon as the problems of a file are known, before the scan completes.
+     *
+     * @param file     the scanned file.
+     * @param problems all the problems found so far in the file.
+     */
+    void problemsFound(PsiFile file, List<Problem> problems);
+
     void scanCompletedSuccessfully(
             Map<PsiFile, List<Problem>> scanResults);
 
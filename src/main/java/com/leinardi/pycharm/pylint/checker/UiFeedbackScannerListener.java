@@ -23,18 +23,44 @@ import com.leinardi.pycharm.pylint.toolwindow.PylintToolWindowPanel;
 import org.jetbrains.annotations.Nullable;
 
 import javax.swing.SwingUtilities;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
 public class UiFeedbackScannerListener implements ScannerListener {
     private final PylintPlugin plugin;
+    private final boolean incremental;
+
+    private volatile List<PsiFile> scannedFiles = Collections.emptyList();
+    private volatile boolean discarded;
 
     public UiFeedbackScannerListener(final PylintPlugin plugin) {
+        this(plugin, false);
+    }
+
+    /**
+     * @param plugin      the plugin.
+     * @param incremental true to update the displayed results in place, instead of replacing them.
+     */
+    public UiFeedbackScannerListener(final PylintPlugin plugin, final boolean incremental) {
         this.plugin = plugin;
+        this.incremental = incremental;
+    }
+
+    /**
+     * Stop displaying the results of the scan, e.g. because it was cancelled: a cancelled scan completes without
+     * problems, which must not replace the displayed ones.
+     */
+    public void discardResults() {
+        discarded = true;
     }
 
     @Override
     public void scanStarting(final List<PsiFile> filesToScan) {
+        scannedFiles = filesToScan;
+        if (incremental) {
+            return;
+        }
         SwingUtilities.invokeLater(() -> {
             final PylintToolWindowPanel toolWindowPanel = toolWindowPanel();
             if (toolWindowPanel != null) {
@@ -45,6 +71,9 @@ public class UiFeedbackScannerListener implements ScannerListener {
 
     @Override
     public void filesScanned(final int count) {
+        if (incremental) {
+            return;
+        }
         SwingUtilities.invokeLater(() -> {
             final PylintToolWindowPanel toolWindowPanel = PylintToolWindowPanel.panelFor(plugin.getProject());
             if (toolWindowPanel != null) {
@@ -53,12 +82,28 @@ public class UiFeedbackScannerListener implements ScannerListener {
         });
     }
 
+    @Override
+    public void problemsFound(final PsiFile file, final List<Problem> problems) {
+        SwingUtilities.invokeLater(() -> {
+            final PylintToolWindowPanel toolWindowPanel = toolWindowPanel();
+            if (toolWindowPanel != null && !discarded) {
+                toolWindowPanel.displayPartialResults(file, problems);
+            }
+        });
+    }
+
     @Override
     public void scanCompletedSuccessfully(
             final Map<PsiFile, List<Problem>> scanResults) {
+        final List<PsiFile> files = scannedFiles;
         SwingUtilities.invokeLater(() -> {
             final PylintToolWindowPanel toolWindowPanel = toolWindowPanel();
-            if (toolWindowPanel != null) {
+            if (toolWindowPanel == null || discarded) {
+                return;
+            }
+            if (incremental) {
+                toolWindowPanel.updateResults(files, scanResults);
+            } else {
                 toolWindowPanel.displayResults(scanResults);
             }
         });
@@ -66,6 +111,10 @@ public class UiFeedbackScannerListener implements ScannerListener {
 
     @Override
     public void scanFailedWithError(final PylintPluginException error) {
+        if (incremental) {
+            // the user was already notified: keep showing the previous results
+            return;
+        }
         SwingUtilities.invokeLater(() -> {
             final PylintToolWindowPanel toolWindowPanel = toolWindowPanel();
             if (toolWindowPanel != null) {
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2023 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.pylint.handlers;
+
+import com.intellij.diff.comparison.ComparisonManager;
+import com.intellij.diff.comparison.ComparisonPolicy;
+import com.intellij.diff.comparison.DiffTooBigException;
+import com.intellij.diff.fragments.LineFragment;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.vcs.VcsException;
+import com.intellij.openapi.vcs.changes.Change;
+import com.intellij.openapi.vcs.changes.ContentRevision;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.leinardi.pycharm.pylint.checker.Problem;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * The lines a commit changes in each of its files, from the diff against the base revision, so that a commit is only
+ * held up by the problems it introduces.
+ * <p>
+ * Files without a base revision, or whose diff can't be computed, count as changed throughout.
+ */
+final class ChangedLines {
+    private static final Logger LOG = Logger.getInstance(ChangedLines.class);
+
+    // 1-based, like the lines Pylint reports
+    private final Map<VirtualFile, BitSet> linesByFile;
+
+    private ChangedLines(final Map<VirtualFile, BitSet> linesByFile) {
+        this.linesByFile = linesByFile;
+    }
+
+    /**
+     * @param changes the changes of the commit.
+     * @param files   the files to scan: the changes of other files aren't diffed.
+     */
+    static ChangedLines of(@NotNull final Collection<Change> changes,
+                           @NotNull final Collection<VirtualFile> files,
+                           @NotNull final ProgressIndicator indicator) {
+        final Set<VirtualFile> scannedFiles = new HashSet<>(files);
+        final Map<VirtualFile, BitSet> linesByFile = new HashMap<>();
+        for (final Change change : changes) {
+            indicator.checkCanceled();
+            final VirtualFile file = change.getVirtualFile();
+            final BitSet lines = file == null || !scannedFiles.contains(file)
+                    ? null : changedLinesOf(change, indicator);
+            if (lines != null) {
+                linesByFile.put(file, lines);
+            }
+        }
+        return new ChangedLines(linesByFile);
+    }
+
+    @Nullable
+    private static BitSet changedLinesOf(@NotNull final Change change, @NotNull final ProgressIndicator indicator) {
+        final ContentRevision beforeRevision = change.getBeforeRevision();
+        final ContentRevision afterRevision = change.getAfterRevision();
+        if (beforeRevision == null || afterRevision == null) {
+            return null;
+        }
+        try {
+            final String before = beforeRevision.getContent();
+            final String after = afterRevision.getContent();
+            if (before == null || after == null) {
+                return null;
+            }
+            final List<LineFragment> fragments = ComparisonManager.getInstance()
+                    .compareLines(before, after, ComparisonPolicy.DEFAULT, indicator);
+            final BitSet lines = new BitSet();
+            for (final LineFragment fragment : fragments) {
+                if (fragment.getStartLine2() == fragment.getEndLine2()) {
+                    // a deletion: the lines around it may now be wrong
+                    lines.set(Math.max(1, fragment.getStartLine2()), fragment.getStartLine2() + 2);
+                } else {
+                    lines.set(fragment.getStartLine2() + 1, fragment.getEndLine2() + 1);
+                }
+            }
+            return lines;
+        } catch (VcsException | DiffTooBigException e) {
+            LOG.debug("Unable to diff " + afterRevision.getFile() + ", reporting the problems of the whole file", e);
+            return null;
+        }
+    }
+
+    /**
+     * @param results the problems of the scanned files.
+     * @return the problems on changed lines, only for the files that have some.
+     */
+    Map<PsiFile, List<Problem>> filter(@NotNull final Map<PsiFile, List<Problem>> results) {
+        final Map<PsiFile, List<Problem>> filtered = new HashMap<>();
+        results.forEach((psiFile, problems) -> {
+            final BitSet lines = linesByFile.get(psiFile.getVirtualFile());
+            // a problem without a line applies to the whole file
+            final List<Problem> changed = lines == null ? problems : problems.stream()
+                    .filter(problem -> problem.line() <= 0 || lines.get(problem.line()))
+                    .collect(toList());
+            if (!changed.isEmpty()) {
+                filtered.put(psiFile, changed);
+            }
+        });
+        return filtered;
+    }
+}
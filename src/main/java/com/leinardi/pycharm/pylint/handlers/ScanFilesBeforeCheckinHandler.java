@@ -27,13 +27,17 @@ import com.intellij.openapi.vcs.CheckinProjectPanel;
 import com.intellij.openapi.vcs.changes.CommitExecutor;
 import com.intellij.openapi.vcs.checkin.CheckinHandler;
 import com.intellij.openapi.vcs.ui.RefreshableOnComponent;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiFile;
 import com.intellij.util.PairConsumer;
 import com.intellij.util.ui.UIUtil;
 import com.leinardi.pycharm.pylint.PylintConfigService;
 import com.leinardi.pycharm.pylint.PylintPlugin;
 import com.leinardi.pycharm.pylint.checker.Problem;
+import com.leinardi.pycharm.pylint.checker.ScannerListener;
+import com.leinardi.pycharm.pylint.exception.PylintPluginException;
 import com.leinardi.pycharm.pylint.toolwindow.PylintToolWindowPanel;
+import com.leinardi.pycharm.pylint.util.VfUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -45,6 +49,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.intellij.openapi.vcs.checkin.CheckinHandler.ReturnResult.CANCEL;
 import static com.intellij.openapi.vcs.checkin.CheckinHandler.ReturnResult.CLOSE_WINDOW;
@@ -67,23 +73,29 @@ public class ScanFilesBeforeCheckinHandler extends CheckinHandler {
     @Override
     public RefreshableOnComponent getBeforeCheckinConfigurationPanel() {
         final JCheckBox checkBox = new JCheckBox(message("handler.before.checkin.checkbox"));
+        final JCheckBox changedLinesCheckBox = new JCheckBox(message("handler.before.checkin.changed-lines.checkbox"));
+        checkBox.addItemListener(e -> changedLinesCheckBox.setEnabled(checkBox.isSelected()));
 
         return new RefreshableOnComponent() {
             @Override
             public JComponent getComponent() {
                 final JPanel panel = new JPanel(new BorderLayout());
-                panel.add(checkBox);
+                panel.add(checkBox, BorderLayout.NORTH);
+                panel.add(changedLinesCheckBox, BorderLayout.SOUTH);
                 return panel;
             }
 
             @Override
             public void saveState() {
                 pylintConfigService.setScanBeforeCheckin(checkBox.isSelected());
+                pylintConfigService.setScanChangedLinesOnly(changedLinesCheckBox.isSelected());
             }
 
             @Override
             public void restoreState() {
                 checkBox.setSelected(pylintConfigService.isScanBeforeCheckin());
+                changedLinesCheckBox.setSelected(pylintConfigService.isScanChangedLinesOnly());
+                changedLinesCheckBox.setEnabled(checkBox.isSelected());
             }
         };
     }
@@ -106,15 +118,34 @@ public class ScanFilesBeforeCheckinHandler extends CheckinHandler {
         if (pylintConfigService.isScanBeforeCheckin()) {
             try {
                 final Map<PsiFile, List<Problem>> scanResults = new HashMap<>();
-                new Task.Modal(project, message("handler.before.checkin.scan.text"), false) {
+                final AtomicBoolean cancelled = new AtomicBoolean();
+                final boolean changedLinesOnly = pylintConfigService.isScanChangedLinesOnly();
+                final List<VirtualFile> files = VfUtil.filterOnlyPythonProjectFiles(project,
+                        new ArrayList<>(checkinPanel.getVirtualFiles()));
+                new Task.Modal(project, message("handler.before.checkin.scan.text"), true) {
                     @Override
                     public void run(@NotNull final ProgressIndicator progressIndicator) {
+                        ChangedLines changedLines = null;
+                        if (changedLinesOnly) {
+                            progressIndicator.setText(message("handler.before.checkin.scan.diff"));
+                            changedLines = ChangedLines.of(checkinPanel.getSelectedChanges(), files,
+                                    progressIndicator);
+                        }
                         progressIndicator.setText(message("handler.before.checkin.scan.in-progress"));
-                        progressIndicator.setIndeterminate(true);
-                        scanResults.putAll(plugin.scanFiles(new ArrayList<>(checkinPanel.getVirtualFiles())));
+                        final Map<PsiFile, List<Problem>> results =
+                                plugin.scanFiles(files, new ProgressScannerListener(progressIndicator));
+                        scanResults.putAll(changedLines == null ? results : changedLines.filter(results));
+                    }
+
+                    @Override
+                    public void onCancel() {
+                        cancelled.set(true);
                     }
                 }.queue();
 
+                if (cancelled.get()) {
+                    return CANCEL;
+                }
                 return processScanResults(scanResults, executor, plugin);
 
             } catch (ProcessCanceledException e) {
@@ -190,4 +221,43 @@ public class ScanFilesBeforeCheckinHandler extends CheckinHandler {
         }
     }
 
+    /**
+     * Reports the share of the files scanned so far.
+     */
+    private static final class ProgressScannerListener implements ScannerListener {
+        private final ProgressIndicator progressIndicator;
+        private final AtomicInteger scannedFiles = new AtomicInteger();
+        private volatile int totalFiles;
+
+        ProgressScannerListener(final ProgressIndicator progressIndicator) {
+            this.progressIndicator = progressIndicator;
+        }
+
+        @Override
+        public void scanStarting(final List<PsiFile> filesToScan) {
+            totalFiles = filesToScan.size();
+            progressIndicator.setIndeterminate(totalFiles == 0);
+            progressIndicator.setFraction(0);
+        }
+
+        @Override
+        public void filesScanned(final int count) {
+            if (totalFiles > 0) {
+                progressIndicator.setFraction((double) scannedFiles.addAndGet(count) / totalFiles);
+            }
+        }
+
+        @Override
+        public void problemsFound(final PsiFile file, final List<Problem> problems) {
+        }
+
+        @Override
+        public void scanCompletedSuccessfully(final Map<PsiFile, List<Problem>> scanResults) {
+        }
+
+        @Override
+        public void scanFailedWithError(final PylintPluginException error) {
+        }
+    }
+
 }
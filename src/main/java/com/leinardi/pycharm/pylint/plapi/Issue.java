@@ -16,6 +16,7 @@
 
 package com.leinardi.pycharm.pylint.plapi;
 
+import com.leinardi.pycharm.pylint.util.Strings;
 import com.squareup.moshi.Json;
 
 import java.util.Objects;
@@ -116,6 +117,27 @@ public class Issue {
         this.messageId = messageId;
     }
 
+    /**
+     * Copy this issue, as if it had been reported for another path. Copies share the strings that repeat across
+     * issues, as they are kept in the result cache.
+     *
+     * @param otherPath the path of the copy.
+     * @return the copy.
+     */
+    public Issue copyFor(String otherPath) {
+        Issue copy = new Issue();
+        copy.severityLevel = severityLevel;
+        copy.module = Strings.intern(module);
+        copy.obj = obj;
+        copy.line = line;
+        copy.column = column;
+        copy.path = otherPath;
+        copy.symbol = Strings.intern(symbol);
+        copy.message = Strings.intern(message);
+        copy.messageId = Strings.intern(messageId);
+        return copy;
+    }
+
     @Override
     public String toString() {
         return "Issue{" +
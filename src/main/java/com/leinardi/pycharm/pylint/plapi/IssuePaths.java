@@ -0,0 +1,86 @@
+/*
+ * Copyright 2023 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.pylint.plapi;
+
+import com.intellij.psi.PsiFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps the paths Pylint reports back to the scanned files, without touching the file system.
+ * <p>
+ * Pylint reports a file under its work directory relative to it, and any other file with the path it was given. Both
+ * forms are indexed up front, so that an issue is matched with a single lookup.
+ */
+public final class IssuePaths {
+
+    @Nullable
+    private final Path baseDir;
+    private final Map<String, PsiFile> files = new HashMap<>();
+
+    /**
+     * @param baseDir the work directory of Pylint, may be null.
+     */
+    public IssuePaths(@Nullable final String baseDir) {
+        this.baseDir = baseDir == null ? null : Paths.get(baseDir).normalize();
+    }
+
+    /**
+     * @param absolutePath the path Pylint is given for the file.
+     * @param psiFile      the file.
+     */
+    public void add(@NotNull final String absolutePath, @NotNull final PsiFile psiFile) {
+        files.put(absolutePath, psiFile);
+        final Path path = Paths.get(absolutePath).normalize();
+        files.putIfAbsent(path.toString(), psiFile);
+        if (baseDir != null && path.startsWith(baseDir)) {
+            files.putIfAbsent(baseDir.relativize(path).toString(), psiFile);
+        }
+    }
+
+    /**
+     * @param issuePath the path of an issue, as reported by Pylint.
+     * @return the file, or null if the path doesn't belong to any of the scanned files.
+     */
+    @Nullable
+    public PsiFile find(@Nullable final String issuePath) {
+        if (issuePath == null) {
+            return null;
+        }
+        final PsiFile psiFile = files.get(issuePath);
+        if (psiFile != null || baseDir == null) {
+            return psiFile;
+        }
+        // e.g. "./module.py": resolving and normalising are string operations only
+        try {
+            return files.get(baseDir.resolve(issuePath).normalize().toString());
+        } catch (InvalidPathException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return files.keySet().toString();
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2023 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.pylint.plapi;
+
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectUtil;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.leinardi.pycharm.pylint.util.VfUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The settings Pylint needs to scan the files of a module: the module's own pylintrc, if any, and its source roots,
+ * which are added to the Python path so that imports between them resolve.
+ * <p>
+ * Files with different settings are scanned separately, still from the project directory. The source roots are sent
+ * along with each request to the Pylint worker, so only a pylintrc of its own takes a module off the worker.
+ */
+public final class ModuleSettings {
+
+    /**
+     * The settings of files outside of any module, or of a module that Pylint already handles on its own.
+     */
+    public static final ModuleSettings NONE = new ModuleSettings(null, Collections.emptyList());
+
+    private static final List<String> PYLINTRC_NAMES = List.of("pylintrc", ".pylintrc");
+
+    @Nullable
+    private final String pylintrcPath;
+    private final List<String> sourceRoots;
+
+    private ModuleSettings(@Nullable final String pylintrcPath, @NotNull final List<String> sourceRoots) {
+        this.pylintrcPath = pylintrcPath;
+        this.sourceRoots = Collections.unmodifiableList(sourceRoots);
+    }
+
+    /**
+     * Resolve the settings of the module owning a content root. Must be called in a read action.
+     *
+     * @param project     the project.
+     * @param contentRoot the content root of the scanned files.
+     * @return the settings.
+     */
+    @NotNull
+    public static ModuleSettings of(@NotNull final Project project, @NotNull final VirtualFile contentRoot) {
+        final Module module = ProjectFileIndex.getInstance(project).getModuleForFile(contentRoot);
+        if (module == null) {
+            return NONE;
+        }
+        final VirtualFile projectDir = ProjectUtil.guessProjectDir(project);
+        final List<String> sourceRoots = new ArrayList<>();
+        for (final VirtualFile sourceRoot : ModuleRootManager.getInstance(module).getSourceRoots(false)) {
+            // the project directory is where Pylint runs from: it is on the path already
+            if (!sourceRoot.equals(projectDir)) {
+                sourceRoots.add(FileUtil.toSystemDependentName(sourceRoot.getPath()));
+            }
+        }
+        final String pylintrcPath = findPylintrc(projectDir, contentRoot);
+        if (pylintrcPath == null && sourceRoots.isEmpty()) {
+            return NONE;
+        }
+        return new ModuleSettings(pylintrcPath, sourceRoots);
+    }
+
+    /**
+     * Look for a pylintrc in the content root, then in its parents up to the project directory, trying every name in
+     * a directory before its parent. Pylint looks up the configuration of the project directory by itself, as it is
+     * started there.
+     */
+    @Nullable
+    private static String findPylintrc(@Nullable final VirtualFile projectDir, @NotNull final VirtualFile contentRoot) {
+        if (contentRoot.equals(projectDir)) {
+            return null;
+        }
+        for (final String name : PYLINTRC_NAMES) {
+            final VirtualFile pylintrc = contentRoot.findChild(name);
+            if (pylintrc != null && !pylintrc.isDirectory()) {
+                return FileUtil.toSystemDependentName(pylintrc.getPath());
+            }
+        }
+        if (projectDir == null || !VfsUtilCore.isAncestor(projectDir, contentRoot, true)) {
+            return null;
+        }
+        final VirtualFile pylintrc = VfUtil.findVfUp(contentRoot, projectDir, PYLINTRC_NAMES);
+        return pylintrc == null ? null : FileUtil.toSystemDependentName(pylintrc.getPath());
+    }
+
+    /**
+     * @return the path of the module's pylintrc, or null to use the one Pylint finds by itself.
+     */
+    @Nullable
+    public String getPylintrcPath() {
+        return pylintrcPath;
+    }
+
+    @NotNull
+    public List<String> getSourceRoots() {
+        return sourceRoots;
+    }
+
+    /**
+     * @param pythonPath the {@code PYTHONPATH} of the environment, if any.
+     * @return the {@code PYTHONPATH} to scan the module with, starting with its source roots.
+     */
+    @NotNull
+    public String getPythonPath(@Nullable final String pythonPath) {
+        final List<String> entries = new ArrayList<>(sourceRoots);
+        if (pythonPath != null && !pythonPath.isEmpty()) {
+            entries.add(pythonPath);
+        }
+        return String.join(File.pathSeparator, entries);
+    }
+
+    @Override
+    public String toString() {
+        return "ModuleSettings{" +
+                "pylintrcPath='" + pylintrcPath + '\'' +
+                ", sourceRoots=" + sourceRoots +
+                '}';
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(pylintrcPath, sourceRoots);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ModuleSettings)) {
+            return false;
+        }
+        ModuleSettings settings = (ModuleSettings) o;
+        return Objects.equals(pylintrcPath, settings.pylintrcPath) &&
+                sourceRoots.equals(settings.sourceRoots);
+    }
+}
@@ -17,6 +17,7 @@
 package com.leinardi.pycharm.pylint.plapi;
 
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiInvalidElementAccessException;
@@ -24,10 +25,8 @@ import com.intellij.util.ThrowableRunnable;
 import com.leinardi.pycharm.pylint.checker.Problem;
 import org.jetbrains.annotations.NotNull;
 
-import java.io.File;
-import java.nio.file.InvalidPathException;
-import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -39,11 +38,11 @@ public class ProcessResultsThread implements ThrowableRunnable<RuntimeException>
 
     private final boolean suppressErrors;
     private final int tabWidth;
-    private final String baseDir;
     private final List<Issue> errors;
-    private final Map<String, PsiFile> fileNamesToPsiFiles;
+    private final IssuePaths issuePaths;
 
     private final Map<PsiFile, List<Problem>> problems = new HashMap<>();
+    private int unmatchedIssues;
 
     private static final class Position {
         private final boolean afterEndOfLine;
@@ -69,71 +68,93 @@ public class ProcessResultsThread implements ThrowableRunnable<RuntimeException>
 
     public ProcessResultsThread(final boolean suppressErrors,
                                 final int tabWidth,
-                                final String baseDir,
                                 final List<Issue> errors,
-                                final Map<String, PsiFile> fileNamesToPsiFiles) {
+                                final IssuePaths issuePaths) {
         this.suppressErrors = suppressErrors;
         this.tabWidth = tabWidth;
-        this.baseDir = baseDir;
         this.errors = errors;
-        this.fileNamesToPsiFiles = fileNamesToPsiFiles;
+        this.issuePaths = issuePaths;
     }
 
-    @Override
-    public void run() {
-        final Map<PsiFile, List<Integer>> lineLengthCachesByFile = new HashMap<>();
-
-        for (final Issue event : errors) {
-            final PsiFile psiFile = fileNamesToPsiFiles.get(filenameFrom(event));
-            if (psiFile == null) {
-                LOG.info("Could not find mapping for file: " + event.getPath() + " in " + fileNamesToPsiFiles);
-                return;
+    /**
+     * The start offset of each line of a file, so that a line is found without walking the text before it.
+     */
+    private static final class LineIndex {
+        private static final int INITIAL_CAPACITY = 256;
+
+        private final CharSequence text;
+        private final int[] lineStarts;
+        private final int lineCount;
+
+        private LineIndex(final CharSequence text) {
+            this.text = text;
+
+            int[] starts = new int[INITIAL_CAPACITY];
+            int count = 1; // line 1 is offset 0
+            final int length = text.length();
+            for (int i = 0; i < length; ++i) {
+                final char character = text.charAt(i);
+                // for linefeeds we need to handle CR, LF and CRLF,
+                // hence we accept either and only trigger a new
+                // line on the LF of CRLF.
+                if (character == '\n' || (character == '\r' && (i + 1 == length || text.charAt(i + 1) != '\n'))) {
+                    if (count == starts.length) {
+                        starts = Arrays.copyOf(starts, count * 2);
+                    }
+                    starts[count++] = i + 1;
+                }
             }
+            this.lineStarts = starts;
+            this.lineCount = count;
+        }
 
-            List<Integer> lineLengthCache = lineLengthCachesByFile.get(psiFile);
-            if (lineLengthCache == null) {
-                // we cache the offset of each line as it is created, so as to
-                // avoid retreating ground we've already covered.
-                lineLengthCache = new ArrayList<>();
-                lineLengthCache.add(0); // line 1 is offset 0
-
-                lineLengthCachesByFile.put(psiFile, lineLengthCache);
-            }
+        private int length() {
+            return text.length();
+        }
 
-            processEvent(psiFile, lineLengthCache, event);
+        private boolean hasLine(final int line) {
+            return line >= 1 && line <= lineCount;
         }
-    }
 
-    private String filenameFrom(final Issue issue) {
-        String path = normalisePath(withTrailingSeparator(baseDir) + issue.getPath());
-        if (new File(path).exists()) {
-            return path;
-        } else {
-            return normalisePath(issue.getPath());
+        private int lineStart(final int line) {
+            return lineStarts[line - 1];
         }
-    }
 
-    private String normalisePath(String prefixedFileName) {
-        try {
-            return Paths.get(prefixedFileName).normalize().toString();
-        } catch (InvalidPathException e) {
-            return prefixedFileName;  // cannot normalize
+        private char charAt(final int offset) {
+            return text.charAt(offset);
         }
     }
 
-    private String withTrailingSeparator(final String path) {
-        if (path != null && !path.endsWith(File.separator)) {
-            return path + File.separator;
+    @Override
+    public void run() {
+        final Map<PsiFile, LineIndex> lineIndexesByFile = new HashMap<>();
+
+        for (final Issue event : errors) {
+            // lets a pending write action interrupt a non-blocking read action
+            ProgressManager.checkCanceled();
+
+            final PsiFile psiFile = issuePaths.find(event.getPath());
+            if (psiFile == null) {
+                if (unmatchedIssues++ == 0) {
+                    LOG.info("Could not find mapping for file: " + event.getPath() + " in " + issuePaths);
+                }
+                continue;
+            }
+
+            // the view provider gives the text without copying it, the index is built once per file
+            final LineIndex lineIndex = lineIndexesByFile.computeIfAbsent(psiFile,
+                    file -> new LineIndex(file.getViewProvider().getContents()));
+
+            processEvent(psiFile, lineIndex, event);
         }
-        return path;
     }
 
-    private void processEvent(final PsiFile psiFile, final List<Integer> lineLengthCache, final Issue event) {
+    private void processEvent(final PsiFile psiFile, final LineIndex lineIndex, final Issue event) {
         //        if (additionalChecksFail(psiFile, event)) {
         //            return;
         //        }
 
-        final Position position = findPosition(lineLengthCache, event, psiFile.textToCharArray());
+        final Position position = findPosition(lineIndex, event);
         final PsiElement victim = position.element(psiFile);
 
         if (victim != null) {
@@ -176,63 +197,29 @@ public class ProcessResultsThread implements ThrowableRunnable<RuntimeException>
     //    }
 
     @NotNull
-    private Position findPosition(final List<Integer> lineLengthCache, final Issue event, final char[] text) {
+    private Position findPosition(final LineIndex lineIndex, final Issue event) {
         if (event.getLine() == 0) {
             return Position.at(event.getColumn());
-        } else if (event.getLine() <= lineLengthCache.size()) {
-            return Position.at(lineLengthCache.get(event.getLine() - 1) + event.getColumn());
-        } else {
-            return searchFromEndOfCachedData(lineLengthCache, event, text);
+        } else if (!lineIndex.hasLine(event.getLine())) {
+            return Position.at(lineIndex.length());
         }
-    }
-
-    @NotNull
-    private Position searchFromEndOfCachedData(final List<Integer> lineLengthCache,
-                                               final Issue event,
-                                               final char[] text) {
-        final Position position;
-        int offset = lineLengthCache.get(lineLengthCache.size() - 1);
-        boolean afterEndOfLine = false;
-        int line = lineLengthCache.size();
 
+        // only the target line is walked, to expand its tabs
+        int offset = lineIndex.lineStart(event.getLine());
         int column = 0;
-        for (int i = offset; i < text.length; ++i) {
-            final char character = text[i];
-
-            // for linefeeds we need to handle CR, LF and CRLF,
-            // hence we accept either and only trigger a new
-            // line on the LF of CRLF.
-            final char nextChar = nextCharacter(text, i);
-            if (character == '\n' || (character == '\r' && nextChar != '\n')) {
-                ++line;
-                ++offset;
-                lineLengthCache.add(offset);
-                column = 0;
-            } else if (character == '\t') {
-                column += tabWidth;
-                ++offset;
-            } else {
-                ++column;
-                ++offset;
-            }
-
-            if (event.getLine() == line && event.getColumn() == column) {
-                if (column == 0 && Character.isWhitespace(nextChar)) {
-                    afterEndOfLine = true;
-                }
+        while (column < event.getColumn() && offset < lineIndex.length()) {
+            final char character = lineIndex.charAt(offset);
+            if (character == '\n' || character == '\r') {
                 break;
             }
+            column += character == '\t' ? tabWidth : 1;
+            ++offset;
         }
 
-        position = Position.at(offset, afterEndOfLine);
-        return position;
-    }
-
-    private char nextCharacter(final char[] text, final int i) {
-        if ((i + 1) < text.length) {
-            return text[i + 1];
-        }
-        return '\0';
+        final boolean afterEndOfLine = event.getColumn() == 0
+                && offset < lineIndex.length()
+                && Character.isWhitespace(lineIndex.charAt(offset));
+        return Position.at(offset, afterEndOfLine);
     }
 
     @NotNull
@@ -240,6 +227,13 @@ public class ProcessResultsThread implements ThrowableRunnable<RuntimeException>
         return Collections.unmodifiableMap(problems);
     }
 
+    /**
+     * @return how many issues were skipped because their path doesn't belong to any of the scanned files.
+     */
+    public int getUnmatchedIssues() {
+        return unmatchedIssues;
+    }
+
     private void addProblem(final PsiFile psiFile, final Problem problem) {
         List<Problem> problemsForFile = problems.get(psiFile);
         if (problemsForFile == null) {
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2023 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.pylint.plapi;
+
+import com.intellij.execution.ExecutionException;
+import com.intellij.execution.configurations.GeneralCommandLine;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import com.leinardi.pycharm.pylint.util.Async;
+import com.leinardi.pycharm.pylint.util.Processes;
+import com.squareup.moshi.Json;
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.Moshi;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A long-lived Pylint worker process.
+ * <p>
+ * The worker runs {@code pylint_daemon.py} with the project interpreter and keeps Pylint and astroid loaded between
+ * scans. Requests and responses are exchanged as one JSON document per line over stdin/stdout.
+ */
+public final class PylintDaemon {
+    private static final Logger LOG = Logger.getInstance(PylintDaemon.class);
+
+    private static final String SCRIPT_RESOURCE = "/com/leinardi/pycharm/pylint/pylint_daemon.py";
+    private static final Moshi MOSHI = new Moshi.Builder().build();
+    private static final JsonAdapter<Request> REQUEST_ADAPTER = MOSHI.adapter(Request.class);
+    private static final JsonAdapter<Response> RESPONSE_ADAPTER = MOSHI.adapter(Response.class);
+
+    private static File script;
+
+    private final Process process;
+    private final BufferedWriter requests;
+    private final BufferedReader responses;
+
+    private volatile long lastUsed = System.currentTimeMillis();
+
+    private PylintDaemon(@NotNull final Process process) {
+        this.process = process;
+        this.requests = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), UTF_8));
+        this.responses = new BufferedReader(new InputStreamReader(process.getInputStream(), UTF_8));
+    }
+
+    /**
+     * Start a worker and wait for it to report that Pylint could be imported.
+     *
+     * @param cmd the command line returned by {@link PylintRunner#getDaemonCommandLine}.
+     * @return the running worker.
+     * @throws ExecutionException if the process could not be created.
+     * @throws IOException        if the worker could not load Pylint or died during startup.
+     */
+    public static PylintDaemon start(@NotNull final GeneralCommandLine cmd) throws ExecutionException, IOException {
+        final PylintDaemon daemon = new PylintDaemon(cmd.createProcess());
+        daemon.drainErrorStream();
+        try {
+            final Response handshake = daemon.readResponse();
+            if (handshake.error != null) {
+                throw new IOException("Pylint daemon failed to start: " + handshake.error);
+            }
+            LOG.info("Pylint daemon started, Pylint version " + handshake.version);
+            return daemon;
+        } catch (IOException e) {
+            daemon.stop();
+            throw e;
+        }
+    }
+
+    /**
+     * Extract the worker script, once per IDE session.
+     *
+     * @return the path of the worker script.
+     * @throws IOException if the script could not be written.
+     */
+    static synchronized File script() throws IOException {
+        if (script == null || !script.exists()) {
+            final File file = FileUtil.createTempFile("pylint_daemon", ".py", true);
+            try (InputStream in = PylintDaemon.class.getResourceAsStream(SCRIPT_RESOURCE)) {
+                if (in == null) {
+                    throw new IOException("Missing resource " + SCRIPT_RESOURCE);
+                }
+                FileUtil.writeToFile(file, FileUtil.loadBytes(in));
+            }
+            script = file;
+        }
+        return script;
+    }
+
+    /**
+     * Run Pylint once inside the worker. Requests are served one at a time.
+     *
+     * @param workDirectory the directory Pylint resolves relative paths against.
+     * @param sysPath       the directories added to the Python path for this scan only, e.g. module source roots.
+     * @param arguments     the Pylint arguments, including the files to scan.
+     * @param unsavedContents the contents to scan instead of the files on disk, by path.
+     * @param issueConsumer receives each issue as soon as the worker reports it.
+     * @return the worker's final response, carrying the exit code.
+     * @throws IOException if the worker died or answered with something that is not a response.
+     */
+    public synchronized Response scan(@NotNull final String workDirectory,
+                                      @NotNull final List<String> sysPath,
+                                      @NotNull final List<String> arguments,
+                                      @NotNull final Map<String, String> unsavedContents,
+                                      @NotNull final Consumer<Issue> issueConsumer) throws IOException {
+        final Request request = new Request();
+        request.cwd = workDirectory;
+        request.sysPath = sysPath;
+        request.args = arguments;
+        request.buffers = unsavedContents;
+        requests.write(REQUEST_ADAPTER.toJson(request));
+        requests.newLine();
+        requests.flush();
+        try {
+            Response response = readResponse();
+            while (response.message != null) {
+                issueConsumer.accept(response.message);
+                response = readResponse();
+            }
+            return response;
+        } finally {
+            lastUsed = System.currentTimeMillis();
+        }
+    }
+
+    public long getLastUsed() {
+        return lastUsed;
+    }
+
+    public boolean isAlive() {
+        return process.isAlive();
+    }
+
+    public void stop() {
+        try {
+            requests.close();
+        } catch (IOException e) {
+            LOG.debug("Error closing Pylint daemon input", e);
+        }
+        Processes.terminate(process);
+    }
+
+    private Response readResponse() throws IOException {
+        final String line = responses.readLine();
+        if (line == null) {
+            throw new IOException("Pylint daemon exited with code " + waitForExitCode());
+        }
+        final Response response = RESPONSE_ADAPTER.fromJson(line);
+        if (response == null) {
+            throw new IOException("Unexpected Pylint daemon response: " + line);
+        }
+        return response;
+    }
+
+    private String waitForExitCode() {
+        try {
+            process.waitFor();
+            return String.valueOf(process.exitValue());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "unknown";
+        }
+    }
+
+    @SuppressWarnings("FutureReturnValueIgnored")
+    private void drainErrorStream() {
+        Async.executeOnPooledThread(() -> {
+            try (BufferedReader errors = new BufferedReader(new InputStreamReader(process.getErrorStream(), UTF_8))) {
+                String line;
+                while ((line = errors.readLine()) != null) {
+                    LOG.debug("Pylint daemon: " + line);
+                }
+            }
+            return null;
+        });
+    }
+
+    private static final class Request {
+        @Json(name = "cwd")
+        String cwd;
+        @Json(name = "sys-path")
+        List<String> sysPath;
+        @Json(name = "args")
+        List<String> args;
+        @Json(name = "buffers")
+        Map<String, String> buffers;
+    }
+
+    /**
+     * A single line written by the worker: the startup handshake, a single issue, or the end of a scan.
+     */
+    public static final class Response {
+        @Json(name = "error")
+        String error;
+        @Json(name = "version")
+        String version;
+        @Json(name = "exit-code")
+        int exitCode;
+        @Json(name = "output")
+        String output;
+        @Json(name = "message")
+        Issue message;
+
+        public int getExitCode() {
+            return exitCode;
+        }
+
+        public String getOutput() {
+            return output == null ? "" : output;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2023 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.pylint.plapi;
+
+import com.intellij.execution.configurations.GeneralCommandLine;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.projectRoots.Sdk;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.leinardi.pycharm.pylint.PylintConfigService;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The Pylint setup of a project, as resolved from its interpreter and the plugin settings: which interpreter and
+ * Pylint executable to run, whether they work, and the environment to run them in.
+ * <p>
+ * It doubles as the launch profile of every process the plugin starts: the command prefix, environment variables and
+ * work directory are computed once, so that preparing a launch is only a matter of copying them.
+ * <p>
+ * Resolving it spawns processes, so it is done once and kept by
+ * {@link com.leinardi.pycharm.pylint.PylintEnvironmentService} until something it depends on changes.
+ */
+public final class PylintEnvironment {
+
+    private final String key;
+    @Nullable
+    private final VirtualFile interpreterFile;
+    private final String pylintPath;
+    private final List<String> pylintCommand;
+    private final boolean valid;
+    private final String pylintVersion;
+    private final Map<String, String> variables;
+    @Nullable
+    private final String workDirectory;
+    private final Set<String> watchedPaths;
+
+    private PylintEnvironment(@NotNull final String key,
+                              @Nullable final VirtualFile interpreterFile,
+                              @NotNull final String pylintPath,
+                              @NotNull final String absolutePylintPath,
+                              final boolean valid,
+                              @NotNull final String pylintVersion,
+                              @NotNull final Map<String, String> variables,
+                              @Nullable final String workDirectory) {
+        this.key = key;
+        this.interpreterFile = interpreterFile;
+        this.pylintPath = pylintPath;
+        this.pylintCommand = pylintPath.isEmpty()
+                ? Collections.emptyList()
+                : List.copyOf(PylintRunner.getPylintCommand(interpreterFile, pylintPath));
+        this.valid = valid;
+        this.pylintVersion = pylintVersion;
+        this.variables = Collections.unmodifiableMap(variables);
+        this.workDirectory = workDirectory;
+
+        final Set<String> paths = new HashSet<>();
+        if (interpreterFile != null) {
+            paths.add(interpreterFile.getPath());
+        }
+        if (!pylintPath.isEmpty()) {
+            paths.add(absolutePylintPath.replace(File.separatorChar, '/'));
+        }
+        this.watchedPaths = paths;
+    }
+
+    /**
+     * Resolve the environment from scratch. This runs Pylint, so it must not be called from the event dispatch
+     * thread.
+     *
+     * @param project the project.
+     * @return the environment.
+     */
+    @NotNull
+    public static PylintEnvironment resolve(@NotNull final Project project) {
+        final String key = keyOf(project);
+        final VirtualFile interpreterFile = PylintRunner.resolveInterpreterFile(project);
+        final String pylintPath = PylintRunner.getPylintPath(project, interpreterFile);
+        final boolean valid = !pylintPath.isEmpty()
+                && PylintRunner.isPylintPathValid(pylintPath, project, interpreterFile);
+        final String pylintVersion = valid ? PylintRunner.getPylintVersion(pylintPath, project, interpreterFile) : "";
+        return new PylintEnvironment(key, interpreterFile, pylintPath,
+                PylintRunner.getAbsolutePylintPath(pylintPath, project), valid, pylintVersion,
+                PylintRunner.resolveEnvironmentVariables(interpreterFile), project.getBasePath());
+    }
+
+    /**
+     * The settings the environment is resolved from: the custom Pylint path and the project interpreter.
+     */
+    @NotNull
+    private static String keyOf(@NotNull final Project project) {
+        final PylintConfigService pylintConfigService = PylintConfigService.getInstance(project);
+        final Sdk projectSdk = ProjectRootManager.getInstance(project).getProjectSdk();
+        return (pylintConfigService == null ? "" : pylintConfigService.getCustomPylintPath()) + '\n'
+                + (projectSdk == null ? "" : projectSdk.getHomePath());
+    }
+
+    /**
+     * @param project the project.
+     * @return false if the settings or the interpreter of the project changed since the environment was resolved.
+     */
+    public boolean isUpToDate(@NotNull final Project project) {
+        return key.equals(keyOf(project));
+    }
+
+    /**
+     * @param path a system-independent path.
+     * @return true if changes to the file can change the environment.
+     */
+    public boolean dependsOn(@NotNull final String path) {
+        return watchedPaths.contains(path);
+    }
+
+    @Nullable
+    public VirtualFile getInterpreterFile() {
+        return interpreterFile;
+    }
+
+    /**
+     * @return the Pylint executable, or an empty string if none was found.
+     */
+    @NotNull
+    public String getPylintPath() {
+        return pylintPath;
+    }
+
+    /**
+     * @return true if Pylint could be run.
+     */
+    public boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * @return the versions of Pylint, astroid and Python, as reported by {@code pylint --version}, or an empty string
+     * if they are not known.
+     */
+    @NotNull
+    public String getPylintVersion() {
+        return pylintVersion;
+    }
+
+    @NotNull
+    public Map<String, String> getVariables() {
+        return variables;
+    }
+
+    /**
+     * @return a new command line running Pylint, to which only the Pylint arguments have to be added.
+     */
+    @NotNull
+    public GeneralCommandLine createPylintCommandLine() {
+        if (pylintCommand.isEmpty()) {
+            throw new IllegalStateException("No Pylint executable");
+        }
+        return createCommandLine(pylintCommand);
+    }
+
+    /**
+     * @param script the Python script to run.
+     * @return a new command line running the script with the interpreter.
+     */
+    @NotNull
+    public GeneralCommandLine createInterpreterCommandLine(@NotNull final String script) {
+        if (interpreterFile == null) {
+            throw new IllegalStateException("No Python interpreter");
+        }
+        return createCommandLine(List.of(interpreterFile.getPath(), script));
+    }
+
+    @NotNull
+    private GeneralCommandLine createCommandLine(@NotNull final List<String> command) {
+        return new GeneralCommandLine(command)
+                .withCharset(UTF_8)
+                .withEnvironment(variables)
+                .withWorkDirectory(workDirectory);
+    }
+}
@@ -20,6 +20,7 @@ import com.intellij.execution.ExecutionException;
 import com.intellij.execution.configurations.GeneralCommandLine;
 import com.intellij.execution.configurations.ParametersList;
 import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.projectRoots.Sdk;
 import com.intellij.openapi.roots.ProjectRootManager;
@@ -27,19 +28,24 @@ import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.PathUtil;
+import com.intellij.util.io.DigestUtil;
 import com.jetbrains.python.packaging.PyPackage;
 import com.jetbrains.python.packaging.PyPackageManager;
 import com.jetbrains.python.sdk.PySdkUtil;
 import com.jetbrains.python.sdk.PythonEnvUtil;
 import com.leinardi.pycharm.pylint.PylintConfigService;
+import com.leinardi.pycharm.pylint.PylintDaemonService;
+import com.leinardi.pycharm.pylint.PylintEnvironmentService;
 import com.leinardi.pycharm.pylint.exception.PylintPluginException;
 import com.leinardi.pycharm.pylint.exception.PylintPluginParseException;
 import com.leinardi.pycharm.pylint.exception.PylintToolException;
+import com.leinardi.pycharm.pylint.util.Async;
 import com.leinardi.pycharm.pylint.util.FileTypes;
 import com.leinardi.pycharm.pylint.util.Notifications;
+import com.leinardi.pycharm.pylint.util.Processes;
 import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.JsonReader;
 import com.squareup.moshi.Moshi;
-import com.squareup.moshi.Types;
 import okio.Okio;
 import org.jdesktop.swingx.util.OS;
 import org.jetbrains.annotations.Nullable;
@@ -50,42 +56,52 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.InterruptedIOException;
-import java.lang.reflect.Type;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
 public class PylintRunner {
     public static final String PYLINT_PACKAGE_NAME = "pylint";
-    private static final String PYLINT_EXECUTABLE_NAME = PYLINT_PACKAGE_NAME + (OS.isWindows() ? ".exe" : "");
+    public static final String PYLINT_EXECUTABLE_NAME = PYLINT_PACKAGE_NAME + (OS.isWindows() ? ".exe" : "");
     private static final Logger LOG = com.intellij.openapi.diagnostic.Logger.getInstance(PylintRunner.class);
     private static final String ENV_KEY_VIRTUAL_ENV = "VIRTUAL_ENV";
     private static final String ENV_KEY_PATH = "PATH";
     private static final String ENV_KEY_PYTHONHOME = "PYTHONHOME";
+    private static final String ENV_KEY_PYTHONPATH = "PYTHONPATH";
     private static final String WHICH_EXECUTABLE_NAME = OS.isWindows() ? "where" : "which";
     private static final String ACTIVATE_FILE_NAME = OS.isWindows() ? "activate.bat" : "activate";
+    private static final List<String> DISCOVERED_CONFIG_FILES =
+            List.of("pylintrc", ".pylintrc", "pyproject.toml", "setup.cfg", "tox.ini");
+    private static final JsonAdapter<Issue> ISSUE_ADAPTER = new Moshi.Builder().build().adapter(Issue.class);
 
     private PylintRunner() {
     }
 
     public static boolean isPylintPathValid(String pylintPath, Project project) {
-        String absolutePath = new File(pylintPath).getAbsolutePath();
-        if (!absolutePath.equals(pylintPath)) {
-            pylintPath = project.getBasePath() + File.separator + pylintPath;
-        }
+        return isPylintPathValid(pylintPath, project, resolveInterpreterFile(project));
+    }
+
+    static boolean isPylintPathValid(String pylintPath, Project project, @Nullable VirtualFile interpreterFile) {
+        pylintPath = getAbsolutePylintPath(pylintPath, project);
         VirtualFile pylintFile = LocalFileSystem.getInstance().findFileByPath(pylintPath);
         if (pylintFile == null || !pylintFile.exists()) {
             LOG.warn("Error while checking Pylint path " + pylintPath + ": null or not exists");
             return false;
         }
-        GeneralCommandLine cmd = getPylintCommandLine(project, pylintPath);
+        GeneralCommandLine cmd = new GeneralCommandLine(getPylintCommand(interpreterFile, pylintPath));
         cmd.addParameter("--help-msg");
         cmd.addParameter("E1101");
         final Process process;
@@ -117,11 +133,50 @@ public class PylintRunner {
         }
     }
 
+    /**
+     * @return the output of {@code pylint --version}, which lists the versions of Pylint, astroid and Python, or an
+     * empty string if it could not be run.
+     */
+    static String getPylintVersion(String pylintPath, Project project, @Nullable VirtualFile interpreterFile) {
+        GeneralCommandLine cmd = new GeneralCommandLine(
+                getPylintCommand(interpreterFile, getAbsolutePylintPath(pylintPath, project)));
+        cmd.addParameter("--version");
+        try {
+            Process process = cmd.createProcess();
+            String output = new BufferedReader(new InputStreamReader(process.getInputStream(), UTF_8))
+                    .lines().collect(Collectors.joining("\n"));
+            process.waitFor();
+            return process.exitValue() == 0 ? output : "";
+        } catch (ExecutionException | InterruptedException e) {
+            LOG.info("Command Line string: " + cmd.getCommandLineString());
+            LOG.warn("Error while reading the Pylint version", e);
+            return "";
+        }
+    }
+
+    static String getAbsolutePylintPath(String pylintPath, Project project) {
+        String absolutePath = new File(pylintPath).getAbsolutePath();
+        if (!absolutePath.equals(pylintPath)) {
+            return project.getBasePath() + File.separator + pylintPath;
+        }
+        return pylintPath;
+    }
+
     public static String getPylintPath(Project project) {
-        return getPylintPath(project, true);
+        return getEnvironment(project).getPylintPath();
     }
 
     public static String getPylintPath(Project project, boolean checkConfigService) {
+        return getPylintPath(project, checkConfigService, resolveInterpreterFile(project));
+    }
+
+    static String getPylintPath(Project project, @Nullable VirtualFile interpreterFile) {
+        return getPylintPath(project, true, interpreterFile);
+    }
+
+    private static String getPylintPath(Project project,
+                                        boolean checkConfigService,
+                                        @Nullable VirtualFile interpreterFile) {
         PylintConfigService pylintConfigService = PylintConfigService.getInstance(project);
         if (checkConfigService) {
             if (pylintConfigService == null) {
@@ -134,7 +189,6 @@ public class PylintRunner {
             }
         }
 
-        VirtualFile interpreterFile = getInterpreterFile(project);
         if (isVenv(interpreterFile)) {
             VirtualFile pylintFile = LocalFileSystem.getInstance()
                     .findFileByPath(interpreterFile.getParent().getPath() + File.separator + PYLINT_EXECUTABLE_NAME);
@@ -152,9 +206,7 @@ public class PylintRunner {
     }
 
     public static boolean checkPylintAvailable(Project project, boolean showNotifications) {
-        String pylintPath = getPylintPath(project);
-        boolean isMypyPathValid = !pylintPath.isEmpty() && isPylintPathValid(pylintPath, project);
-        if (isMypyPathValid) {
+        if (getEnvironment(project).isValid()) {
             return true;
         }
 
@@ -194,6 +246,16 @@ public class PylintRunner {
         return pylintrcPath;
     }
 
+    /**
+     * The pylintrc of the plugin settings applies to every module, those of the modules only apply when it is not set.
+     */
+    private static String getPylintrcFile(String projectPylintrcPath, ModuleSettings moduleSettings) {
+        if (projectPylintrcPath.isEmpty() && moduleSettings.getPylintrcPath() != null) {
+            return moduleSettings.getPylintrcPath();
+        }
+        return projectPylintrcPath;
+    }
+
     public static String detectSystemPylintPath() {
         GeneralCommandLine cmd = new GeneralCommandLine(WHICH_EXECUTABLE_NAME);
         cmd.addParameter(PYLINT_EXECUTABLE_NAME);
@@ -225,96 +287,279 @@ public class PylintRunner {
 
     public static List<Issue> scan(Project project, Set<String> filesToScan) throws InterruptedIOException,
             InterruptedException {
-        if (!checkPylintAvailable(project, true)) {
-            return new ArrayList<>();
-        }
-        PylintConfigService pylintConfigService = PylintConfigService.getInstance(project);
+        List<Issue> issues = new ArrayList<>();
+        scan(project, filesToScan, ModuleSettings.NONE, issues::add);
+        return issues;
+    }
+
+    /**
+     * Scan the given files, handing each issue to the consumer as soon as it has been decoded, without ever holding
+     * the whole Pylint output in memory.
+     *
+     * @param moduleSettings the settings of the module the files belong to.
+     * @return false if Pylint is not available and nothing was scanned.
+     */
+    public static boolean scan(Project project,
+                               Set<String> filesToScan,
+                               ModuleSettings moduleSettings,
+                               Consumer<Issue> issueConsumer) throws InterruptedIOException, InterruptedException {
+        return scan(project, filesToScan, Collections.emptyMap(), moduleSettings, issueConsumer);
+    }
+
+    /**
+     * Scan the given files, some of them from their unsaved contents rather than from disk, without copying them to
+     * temporary files.
+     * <p>
+     * The Pylint worker scans all the files, unsaved or not, in a single run. A one-shot process can only read a single
+     * module from its standard input ({@code --from-stdin}): without the worker, each unsaved file is scanned by a
+     * process of its own.
+     *
+     * @param unsavedContents the contents to scan instead of the files on disk, by path.
+     * @param moduleSettings  the settings of the module the files belong to.
+     * @return false if Pylint is not available and nothing was scanned.
+     */
+    public static boolean scan(Project project,
+                               Set<String> filesToScan,
+                               Map<String, String> unsavedContents,
+                               ModuleSettings moduleSettings,
+                               Consumer<Issue> issueConsumer) throws InterruptedIOException, InterruptedException {
         if (filesToScan.isEmpty()) {
             throw new PylintPluginException("Illegal state: filesToScan is empty");
         }
+        return run(project, moduleSettings, new ArrayList<>(filesToScan), unsavedContents, issueConsumer);
+    }
+
+    private static boolean run(Project project,
+                               ModuleSettings moduleSettings,
+                               List<String> files,
+                               Map<String, String> unsavedContents,
+                               Consumer<Issue> issueConsumer) throws InterruptedIOException, InterruptedException {
+        if (!checkPylintAvailable(project, true)) {
+            return false;
+        }
+        PylintConfigService pylintConfigService = PylintConfigService.getInstance(project);
         if (pylintConfigService == null) {
             throw new PylintPluginException("Illegal state: pylintConfigService is null");
         }
 
-        String pylintPath = getPylintPath(project);
+        PylintEnvironment environment = getEnvironment(project);
+        String pylintPath = environment.getPylintPath();
         if (pylintPath.isEmpty()) {
             throw new PylintToolException("Path to Pylint executable not set (check Plugin Settings)");
         }
 
-        String pylintrcPath = getPylintrcFile(project, pylintConfigService.getPylintrcPath());
-
-        GeneralCommandLine cmd = getPylintCommandLine(project, pylintPath);
-
-        cmd.setCharset(UTF_8);
-        cmd.addParameter("-f");
-        cmd.addParameter("json");
-
-        injectEnvironmentVariables(project, cmd);
+        String projectPylintrcPath = getPylintrcFile(project, pylintConfigService.getPylintrcPath());
+        String pylintrcPath = getPylintrcFile(projectPylintrcPath, moduleSettings);
 
+        List<String> arguments = new ArrayList<>();
         if (!pylintrcPath.isEmpty()) {
-            cmd.addParameter("--rcfile");
-            cmd.addParameter(pylintrcPath);
+            arguments.add("--rcfile");
+            arguments.add(pylintrcPath);
+        }
+        arguments.addAll(Arrays.asList(ParametersList.parse(pylintConfigService.getPylintArguments())));
+
+        // the worker is started with the project's pylintrc: switching it between modules would restart it every time
+        List<String> workerArguments = new ArrayList<>(arguments);
+        workerArguments.addAll(files);
+        if (pylintrcPath.equals(projectPylintrcPath) && scanWithDaemon(project, pylintPath, pylintrcPath,
+                pylintConfigService, moduleSettings.getSourceRoots(), workerArguments, unsavedContents,
+                issueConsumer)) {
+            return true;
         }
 
-        ParametersList parametersList = cmd.getParametersList();
-        parametersList.addParametersString(pylintConfigService.getPylintArguments());
+        List<String> savedFiles = files.stream()
+                .filter(file -> !unsavedContents.containsKey(file))
+                .collect(Collectors.toList());
+        if (!savedFiles.isEmpty()) {
+            List<String> processArguments = new ArrayList<>(arguments);
+            processArguments.addAll(savedFiles);
+            runProcess(project, environment, moduleSettings, processArguments, null, issueConsumer);
+        }
+        for (Map.Entry<String, String> unsavedFile : unsavedContents.entrySet()) {
+            List<String> processArguments = new ArrayList<>(arguments);
+            processArguments.add("--from-stdin");
+            processArguments.add(unsavedFile.getKey());
+            runProcess(project, environment, moduleSettings, processArguments, unsavedFile.getValue(),
+                    issueConsumer);
+        }
+        return true;
+    }
 
-        for (String file : filesToScan) {
-            cmd.addParameter(file);
+    private static void runProcess(Project project,
+                                   PylintEnvironment environment,
+                                   ModuleSettings moduleSettings,
+                                   List<String> arguments,
+                                   @Nullable String stdin,
+                                   Consumer<Issue> issueConsumer) throws InterruptedIOException,
+            InterruptedException {
+        GeneralCommandLine cmd = environment.createPylintCommandLine();
+        if (!moduleSettings.getSourceRoots().isEmpty()) {
+            String pythonPath = cmd.getEnvironment().getOrDefault(ENV_KEY_PYTHONPATH,
+                    System.getenv(ENV_KEY_PYTHONPATH));
+            cmd.withEnvironment(ENV_KEY_PYTHONPATH, moduleSettings.getPythonPath(pythonPath));
         }
+        cmd.addParameter("-f");
+        cmd.addParameter("json");
+        cmd.addParameters(arguments);
 
-        cmd.setWorkDirectory(project.getBasePath());
-        final Process process;
+        Process process = null;
+        Async.CancelWatch stopOnCancel = null;
+        boolean completed = false;
 
         try {
             process = cmd.createProcess();
-            Moshi moshi = new Moshi.Builder().build();
-            Type type = Types.newParameterizedType(List.class, Issue.class);
-            JsonAdapter<List<Issue>> adapter = moshi.adapter(type);
+            // a cancelled scan must not wait for Pylint to finish on its own
+            final Process started = process;
+            stopOnCancel = Async.onCancel(() -> Processes.terminate(started));
+            if (stdin != null) {
+                // Pylint reads the whole buffer before reporting anything
+                try (OutputStream outputStream = process.getOutputStream()) {
+                    outputStream.write(stdin.getBytes(UTF_8));
+                }
+            }
             InputStream inputStream = process.getInputStream();
             assert (inputStream != null);
-            List<Issue> issues;
-            if (checkIfInputStreamIsEmpty(inputStream)) {
-                issues = new ArrayList<>();
-            } else {
-                issues = adapter.fromJson(Okio.buffer(Okio.source(inputStream)));
+            if (!checkIfInputStreamIsEmpty(inputStream)) {
+                try (JsonReader reader = JsonReader.of(Okio.buffer(Okio.source(inputStream)))) {
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        issueConsumer.accept(ISSUE_ADAPTER.fromJson(reader));
+                    }
+                    reader.endArray();
+                }
             }
             process.waitFor();
+            completed = true;
+            checkInterrupted();
 
-            // Anything equal or bigger than 32 is an abnormal exit code
-            // See https://docs.pylint.org/en/1.6.0/run.html#exit-codes
-            int exitCode = process.exitValue();
-            if (exitCode >= 32) {
-                InputStream errStream = process.getErrorStream();
-                String detail = new BufferedReader(new InputStreamReader(errStream, UTF_8))
-                        .lines().collect(Collectors.joining("\n"));
-
-                Notifications.showPylintAbnormalExit(project, detail);
-                throw new PylintToolException("Pylint failed with code " + exitCode);
-            }
-            return issues;
+            String detail = new BufferedReader(new InputStreamReader(process.getErrorStream(), UTF_8))
+                    .lines().collect(Collectors.joining("\n"));
+            checkExitCode(project, process.exitValue(), detail);
         } catch (InterruptedIOException e) {
             LOG.info("Command Line string: " + cmd.getCommandLineString());
             throw e;
         } catch (IOException e) {
+            // the output of a process stopped on cancellation is cut short
+            checkInterrupted();
             LOG.info("Command Line string: " + cmd.getCommandLineString());
             throw new PylintPluginParseException(e.getMessage(), e);
         } catch (ExecutionException e) {
             LOG.info("Command Line string: " + cmd.getCommandLineString());
             throw new PylintToolException("Error creating Pylint process", e);
+        } finally {
+            if (stopOnCancel != null) {
+                stopOnCancel.cancel();
+            }
+            // e.g. an interrupted wait, or a ProcessCanceledException from the consumer
+            if (process != null && !completed) {
+                Processes.terminate(process);
+            }
+        }
+    }
+
+    private static void checkInterrupted() throws InterruptedIOException {
+        ProgressManager.checkCanceled();
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Pylint scan cancelled");
+        }
+    }
+
+    /**
+     * Fingerprint everything, apart from the scanned file itself, that the results of a scan depend on: interpreter,
+     * Pylint executable, Pylint and astroid versions, arguments, module source roots and the contents of the
+     * configuration files.
+     *
+     * @param moduleSettings the settings of the module the scanned files belong to.
+     * @return the fingerprint, or null if the configuration can't be read and results must not be reused.
+     */
+    @Nullable
+    public static String getConfigFingerprint(Project project, ModuleSettings moduleSettings) {
+        PylintConfigService pylintConfigService = PylintConfigService.getInstance(project);
+        if (pylintConfigService == null || project.getBasePath() == null) {
+            return null;
+        }
+        try {
+            String pylintrcPath = getPylintrcFile(getPylintrcFile(project, pylintConfigService.getPylintrcPath()),
+                    moduleSettings);
+            VirtualFile interpreterFile = getInterpreterFile(project);
+            StringBuilder fingerprint = new StringBuilder()
+                    .append(interpreterFile == null ? "" : interpreterFile.getPath()).append('\n')
+                    .append(getPylintPath(project)).append('\n')
+                    .append(getEnvironment(project).getPylintVersion()).append('\n')
+                    .append(pylintConfigService.getPylintArguments()).append('\n')
+                    .append(moduleSettings.getSourceRoots()).append('\n');
+            // without --rcfile, Pylint looks up its configuration in the work directory
+            List<String> configFiles = pylintrcPath.isEmpty()
+                    ? DISCOVERED_CONFIG_FILES.stream()
+                    .map(name -> project.getBasePath() + File.separator + name)
+                    .collect(Collectors.toList())
+                    : List.of(pylintrcPath);
+            for (String configFile : configFiles) {
+                Path configPath = Path.of(configFile);
+                fingerprint.append(configFile).append('=');
+                if (Files.isRegularFile(configPath)) {
+                    fingerprint.append(DigestUtil.sha256Hex(Files.readAllBytes(configPath)));
+                }
+                fingerprint.append('\n');
+            }
+            return fingerprint.toString();
+        } catch (IOException | PylintPluginException | InvalidPathException e) {
+            LOG.debug("Unable to fingerprint the Pylint configuration", e);
+            return null;
         }
     }
 
-    private static GeneralCommandLine getPylintCommandLine(Project project, String pylintPath) {
-        GeneralCommandLine cmd;
+    /**
+     * Run the scan in the project's long-lived Pylint worker, if it can be used.
+     *
+     * @param sourceRoots     added to the Python path of the worker for this scan only.
+     * @param unsavedContents the contents to scan instead of the files on disk, by path.
+     * @return false if the scan must be run in a one-shot process instead.
+     */
+    private static boolean scanWithDaemon(Project project,
+                                          String pylintPath,
+                                          String pylintrcPath,
+                                          PylintConfigService pylintConfigService,
+                                          List<String> sourceRoots,
+                                          List<String> arguments,
+                                          Map<String, String> unsavedContents,
+                                          Consumer<Issue> issueConsumer) throws InterruptedIOException {
+        PylintDaemonService daemonService = project.getService(PylintDaemonService.class);
         VirtualFile interpreterFile = getInterpreterFile(project);
+        if (daemonService == null || interpreterFile == null || FileTypes.isWindowsExecutable(pylintPath)) {
+            return false;
+        }
+
+        // a worker started before Pylint or astroid were upgraded still runs the old versions
+        String fingerprint = String.join("\n", interpreterFile.getPath(), pylintPath,
+                getEnvironment(project).getPylintVersion(), pylintrcPath, pylintConfigService.getPylintArguments());
+        PylintDaemon.Response response = daemonService.scan(fingerprint,
+                () -> getDaemonCommandLine(project), sourceRoots, arguments, unsavedContents, issueConsumer);
+        if (response == null) {
+            return false;
+        }
+        checkExitCode(project, response.getExitCode(), response.getOutput());
+        return true;
+    }
+
+    private static void checkExitCode(Project project, int exitCode, String detail) {
+        // Anything equal or bigger than 32 is an abnormal exit code
+        // See https://docs.pylint.org/en/1.6.0/run.html#exit-codes
+        if (exitCode >= 32) {
+            Notifications.showPylintAbnormalExit(project, detail);
+            throw new PylintToolException("Pylint failed with code " + exitCode);
+        }
+    }
+
+    static GeneralCommandLine getDaemonCommandLine(Project project) throws IOException {
+        return getEnvironment(project).createInterpreterCommandLine(PylintDaemon.script().getAbsolutePath());
+    }
+
+    static List<String> getPylintCommand(@Nullable VirtualFile interpreterFile, String pylintPath) {
         if (interpreterFile == null || FileTypes.isWindowsExecutable(pylintPath)) {
-            cmd = new GeneralCommandLine(pylintPath);
-        } else {
-            cmd = new GeneralCommandLine(interpreterFile.getPath());
-            cmd.addParameter(pylintPath);
+            return List.of(pylintPath);
         }
-        return cmd;
+        return List.of(interpreterFile.getPath(), pylintPath);
     }
 
     private static boolean checkIfInputStreamIsEmpty(InputStream inputStream) throws IOException {
@@ -324,8 +569,17 @@ public class PylintRunner {
         return data == -1;
     }
 
+    private static PylintEnvironment getEnvironment(Project project) {
+        return PylintEnvironmentService.getInstance(project).getEnvironment();
+    }
+
     @Nullable
     private static VirtualFile getInterpreterFile(Project project) {
+        return getEnvironment(project).getInterpreterFile();
+    }
+
+    @Nullable
+    static VirtualFile resolveInterpreterFile(Project project) {
         PylintConfigService pylintConfigService = PylintConfigService.getInstance(project);
         if (pylintConfigService == null) {
             throw new IllegalStateException("PylintConfigService is null");
@@ -350,11 +604,10 @@ public class PylintRunner {
         }
     }
 
-    private static void injectEnvironmentVariables(Project project, GeneralCommandLine cmd) {
-        VirtualFile interpreterFile = getInterpreterFile(project);
+    static Map<String, String> resolveEnvironmentVariables(@Nullable VirtualFile interpreterFile) {
         Map<String, String> extraEnv = null;
         Map<String, String> systemEnv = System.getenv();
-        Map<String, String> expandedCmdEnv = PySdkUtil.mergeEnvVariables(systemEnv, cmd.getEnvironment());
+        Map<String, String> expandedCmdEnv = new HashMap<>(systemEnv);
         if (isVenv(interpreterFile)) {
             String venvPath = PathUtil.getParentPath(PathUtil.getParentPath(interpreterFile.getPath()));
             extraEnv = new HashMap<>();
@@ -365,9 +618,7 @@ public class PylintRunner {
             expandedCmdEnv.remove(ENV_KEY_PYTHONHOME);
         }
 
-        Map<String, String> env = extraEnv != null ? PySdkUtil.mergeEnvVariables(expandedCmdEnv, extraEnv) :
-                expandedCmdEnv;
-        cmd.withEnvironment(env);
+        return extraEnv != null ? PySdkUtil.mergeEnvVariables(expandedCmdEnv, extraEnv) : expandedCmdEnv;
     }
 
     private static boolean isVenv(@Nullable VirtualFile interpreterFile) {
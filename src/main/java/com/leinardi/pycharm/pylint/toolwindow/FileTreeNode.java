@@ -0,0 +1,184 @@
+/*
+ * Copyright 2023 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.pylint.toolwindow;
+
+import com.intellij.psi.PsiFile;
+import com.leinardi.pycharm.pylint.checker.Problem;
+import com.leinardi.pycharm.pylint.plapi.SeverityLevel;
+
+import javax.swing.tree.TreeNode;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+
+/**
+ * Tree node of a scanned file, whose problem nodes are only created when they are first needed, usually when the node
+ * is expanded, and created again only when its problems change.
+ * <p>
+ * Until then, the number of visible problems is worked out from the problem counts of each severity, which are also
+ * used for the labels of the file and of the root.
+ */
+class FileTreeNode extends TogglableTreeNode {
+    private static final long serialVersionUID = 6392871622359307464L;
+
+    private final PsiFile file;
+    private final String sortKey;
+    private final int[] problemCounts = new int[SeverityLevel.values().length];
+    private final boolean[] visibleLevels = new boolean[SeverityLevel.values().length];
+
+    private List<Problem> problems;
+    private boolean materialized;
+
+    FileTreeNode(final PsiFile file, final List<Problem> problems) {
+        this.file = file;
+        this.sortKey = sortKeyOf(file);
+        Arrays.fill(visibleLevels, true);
+        setProblems(problems);
+    }
+
+    /**
+     * @param otherProblems the problems found by another scan.
+     * @return true if the node displays the same problems.
+     */
+    boolean hasProblems(final List<Problem> otherProblems) {
+        return problems.equals(otherProblems);
+    }
+
+    /**
+     * Display other problems. The problem nodes are dropped, to be created again when needed.
+     *
+     * @param newProblems the problems.
+     */
+    void setProblems(final List<Problem> newProblems) {
+        removeAllChildren();
+        materialized = false;
+        problems = newProblems;
+        Arrays.fill(problemCounts, 0);
+        for (final Problem problem : newProblems) {
+            problemCounts[problem.severityLevel().ordinal()]++;
+        }
+        setUserObject(new ResultTreeNode(file.getName(), problemCounts));
+    }
+
+    PsiFile getFile() {
+        return file;
+    }
+
+    /**
+     * @param file a scanned file.
+     * @return the key file nodes are sorted by: the name of the file, then its path.
+     */
+    static String sortKeyOf(final PsiFile file) {
+        return file.getName() + '\0' + file.getViewProvider().getVirtualFile().getPath();
+    }
+
+    /**
+     * @return the sort key of the file when the node was created, which a renamed file doesn't change, so that the
+     * nodes stay in the order they were inserted in.
+     */
+    String getSortKey() {
+        return sortKey;
+    }
+
+    /**
+     * @return the number of problems of each severity, indexed by ordinal.
+     */
+    int[] getProblemCounts() {
+        return problemCounts;
+    }
+
+    int getProblemCount() {
+        int count = 0;
+        for (final int levelCount : problemCounts) {
+            count += levelCount;
+        }
+        return count;
+    }
+
+    /**
+     * Display only the problems of the given severity levels.
+     *
+     * @param levels the levels.
+     * @return true if the visible problems changed.
+     */
+    boolean setVisibleLevels(final boolean[] levels) {
+        boolean changed = false;
+        for (int level = 0; level < levels.length; ++level) {
+            if (visibleLevels[level] != levels[level]) {
+                visibleLevels[level] = levels[level];
+                changed |= problemCounts[level] > 0;
+            }
+        }
+        if (changed && materialized) {
+            for (final TogglableTreeNode problemNode : super.getAllChildren()) {
+                final ResultTreeNode result = (ResultTreeNode) problemNode.getUserObject();
+                problemNode.setVisible(visibleLevels[result.getSeverity().ordinal()]);
+            }
+        }
+        return changed;
+    }
+
+    private void materialize() {
+        if (materialized) {
+            return;
+        }
+        materialized = true;
+        for (final Problem problem : problems) {
+            final TogglableTreeNode problemNode = new TogglableTreeNode(new ResultTreeNode(file, problem));
+            problemNode.setVisible(visibleLevels[problem.severityLevel().ordinal()]);
+            add(problemNode);
+        }
+    }
+
+    @Override
+    List<TogglableTreeNode> getAllChildren() {
+        materialize();
+        return super.getAllChildren();
+    }
+
+    @Override
+    public TreeNode getChildAt(final int index) {
+        materialize();
+        return super.getChildAt(index);
+    }
+
+    @Override
+    public int getChildCount() {
+        if (materialized) {
+            return super.getChildCount();
+        }
+        int count = 0;
+        for (int level = 0; level < problemCounts.length; ++level) {
+            if (visibleLevels[level]) {
+                count += problemCounts[level];
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int getIndex(final TreeNode child) {
+        materialize();
+        return super.getIndex(child);
+    }
+
+    @Override
+    public Enumeration<TreeNode> children() {
+        materialize();
+        return super.children();
+    }
+}
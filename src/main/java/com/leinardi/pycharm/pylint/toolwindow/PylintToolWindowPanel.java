@@ -66,9 +66,11 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -86,6 +88,7 @@ public class PylintToolWindowPanel extends JPanel implements DumbAware {
 
     private static final String MAIN_ACTION_GROUP = "PylintPluginActions";
     private static final String TREE_ACTION_GROUP = "PylintPluginTreeActions";
+    private static final int MAX_EXPANDED_PROBLEMS = 1000;
     private static final Map<Pattern, String> PYLINT_ERROR_PATTERNS
             = new HashMap<>();
 
@@ -98,6 +101,7 @@ public class PylintToolWindowPanel extends JPanel implements DumbAware {
     private boolean displayingConvention = true;
     private boolean displayingRefactors = true;
     private boolean displayingInfo = true;
+    private boolean expandResults;
 
     private JTree resultsTree;
     private JToolBar progressPanel;
@@ -464,15 +468,15 @@ public class PylintToolWindowPanel extends JPanel implements DumbAware {
     }
 
     /**
-     * Clear the results and display a 'scan in progress' notice.
+     * Show the progress of a scan. The displayed results are kept until the results of the scan replace them.
      *
      * @param size the number of files being scanned.
      */
     public void displayInProgress(final int size) {
         setProgressBarMax(size);
 
-        treeModel.clear();
-        treeModel.setRootMessage("plugin.results.in-progress");
+        // partial results may fill the tree before the scan completes
+        expandResults = treeModel.isEmpty();
     }
 
     public void displayWarningResult(final String messageKey,
@@ -559,15 +563,51 @@ public class PylintToolWindowPanel extends JPanel implements DumbAware {
      * @param results the map of checked files to problem descriptors.
      */
     public void displayResults(final Map<PsiFile, List<Problem>> results) {
+        // results replacing displayed ones keep the expansion state of the tree
+        final boolean firstDisplay = expandResults || treeModel.isEmpty();
+        expandResults = false;
         treeModel.setModel(results, getDisplayedSeverities());
 
         invalidate();
         repaint();
 
-        expandTree();
+        if (firstDisplay) {
+            // expanding a file builds the nodes of its problems: leave large results collapsed to the files
+            expandTree(treeModel.getProblemCount() <= MAX_EXPANDED_PROBLEMS ? 3 : 1);
+        }
         clearProgress();
     }
 
+    /**
+     * Display the results of a single file while the scan is still running.
+     *
+     * @param file     the scanned file.
+     * @param problems all the problems found so far in the file.
+     */
+    public void displayPartialResults(final PsiFile file, final List<Problem> problems) {
+        treeModel.addFileResults(file, problems, getDisplayedSeverities());
+    }
+
+    /**
+     * Replace the displayed results of the files that were scanned again, keeping the others.
+     *
+     * @param files   the files that were scanned again.
+     * @param results their problems.
+     */
+    public void updateResults(final Collection<PsiFile> files, final Map<PsiFile, List<Problem>> results) {
+        treeModel.updateFileResults(files, results, getDisplayedSeverities());
+
+        invalidate();
+        repaint();
+    }
+
+    /**
+     * @return the files whose results are displayed, or an empty set when no results are displayed.
+     */
+    public Set<PsiFile> getScannedFiles() {
+        return treeModel.getScannedFiles();
+    }
+
     public boolean isDisplayingErrors() {
         return displayingErrors;
     }
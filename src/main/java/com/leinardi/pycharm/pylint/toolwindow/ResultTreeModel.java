@@ -18,7 +18,6 @@ package com.leinardi.pycharm.pylint.toolwindow;
 
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.psi.PsiFile;
-import com.intellij.psi.PsiFileSystemItem;
 import com.leinardi.pycharm.pylint.PylintBundle;
 import com.leinardi.pycharm.pylint.checker.Problem;
 import com.leinardi.pycharm.pylint.plapi.SeverityLevel;
@@ -28,19 +27,26 @@ import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.TreeNode;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 
-import static java.util.Comparator.comparing;
-
 public class ResultTreeModel extends DefaultTreeModel {
 
     private static final long serialVersionUID = 2161855162879365203L;
 
+    // on the keys captured when the nodes were created, as the name of a file may change while it is displayed
+    private static final Comparator<FileTreeNode> NODE_ORDER = Comparator.comparing(FileTreeNode::getSortKey);
+
     private final DefaultMutableTreeNode visibleRootNode;
+    private final Map<PsiFile, FileTreeNode> fileNodes = new HashMap<>();
+    private final Set<PsiFile> scannedFiles = new HashSet<>();
 
     public ResultTreeModel() {
         super(new DefaultMutableTreeNode());
@@ -53,6 +59,8 @@ public class ResultTreeModel extends DefaultTreeModel {
 
     public void clear() {
         visibleRootNode.removeAllChildren();
+        fileNodes.clear();
+        scannedFiles.clear();
         nodeStructureChanged(visibleRootNode);
     }
 
@@ -60,6 +68,13 @@ public class ResultTreeModel extends DefaultTreeModel {
         return visibleRootNode;
     }
 
+    /**
+     * @return true if no file is displayed.
+     */
+    public boolean isEmpty() {
+        return fileNodes.isEmpty();
+    }
+
     /**
      * Set the root message.
      * <p>
@@ -99,35 +114,29 @@ public class ResultTreeModel extends DefaultTreeModel {
      * @param levels the levels. Null is treated as 'none'.
      */
     public void filter(final SeverityLevel... levels) {
-        filter(true, levels);
-    }
-
-    private void filter(final boolean sendEvents, final SeverityLevel... levels) {
+        final boolean[] visibleLevels = visibleLevels(levels);
         final Set<TogglableTreeNode> changedNodes = new HashSet<>();
 
-        for (int fileIndex = 0; fileIndex < visibleRootNode.getChildCount(); ++fileIndex) {
-            final TogglableTreeNode fileNode = (TogglableTreeNode) visibleRootNode.getChildAt(fileIndex);
-
-            for (final TogglableTreeNode problemNode : fileNode.getAllChildren()) {
-                final ResultTreeNode result = (ResultTreeNode) problemNode.getUserObject();
-
-                final boolean currentVisible = problemNode.isVisible();
-                final boolean desiredVisible = contains(levels, result.getSeverity());
-                if (currentVisible != desiredVisible) {
-                    problemNode.setVisible(desiredVisible);
-
-                    changedNodes.add(fileNode);
-                }
+        for (final FileTreeNode fileNode : fileNodes.values()) {
+            if (fileNode.setVisibleLevels(visibleLevels)) {
+                changedNodes.add(fileNode);
             }
         }
 
-        if (sendEvents) {
-            for (final TogglableTreeNode node : changedNodes) {
-                nodeStructureChanged(node);
-            }
+        for (final TogglableTreeNode node : changedNodes) {
+            nodeStructureChanged(node);
         }
     }
 
+    private boolean[] visibleLevels(final SeverityLevel... levels) {
+        final SeverityLevel[] allLevels = SeverityLevel.values();
+        final boolean[] visibleLevels = new boolean[allLevels.length];
+        for (int level = 0; level < allLevels.length; ++level) {
+            visibleLevels[level] = contains(levels, allLevels[level]);
+        }
+        return visibleLevels;
+    }
+
     /*
      * This is a port from commons-lang 2.4, in order to get around the absence of commons-lang in
      * some packages of IDEA 7.x.
@@ -154,63 +163,209 @@ public class ResultTreeModel extends DefaultTreeModel {
 
     /**
      * Set the displayed model.
+     * <p>
+     * Only the nodes of the files whose problems changed are removed, inserted or updated, so that the rest of the
+     * tree keeps its expansion and selection.
      *
      * @param results the model.
      * @param levels  the levels to display.
      */
     public void setModel(final Map<PsiFile, List<Problem>> results,
                          final SeverityLevel... levels) {
-        visibleRootNode.removeAllChildren();
+        final Map<PsiFile, List<Problem>> newResults = results == null ? Collections.emptyMap() : results;
+        final boolean[] visibleLevels = visibleLevels(levels);
+
+        final List<Integer> removedIndices = new ArrayList<>();
+        final List<Object> removedNodes = new ArrayList<>();
+        for (int index = 0; index < visibleRootNode.getChildCount(); ++index) {
+            final FileTreeNode fileNode = (FileTreeNode) visibleRootNode.getChildAt(index);
+            if (isEmpty(newResults.get(fileNode.getFile()))) {
+                removedIndices.add(index);
+                removedNodes.add(fileNode);
+            }
+        }
+        for (int removed = removedIndices.size() - 1; removed >= 0; --removed) {
+            visibleRootNode.remove(removedIndices.get(removed).intValue());
+            fileNodes.remove(((FileTreeNode) removedNodes.get(removed)).getFile());
+        }
+        if (!removedIndices.isEmpty()) {
+            nodesWereRemoved(visibleRootNode, toArray(removedIndices), removedNodes.toArray());
+        }
 
-        boolean hasProblems = false;
-        int[] totalCounts = new int[SeverityLevel.values().length];
-        for (final PsiFile file : sortedFileNames(results)) {
-            final TogglableTreeNode fileNode = new TogglableTreeNode();
-            final List<Problem> problems = results.get(file);
+        for (final FileTreeNode fileNode : fileNodes.values()) {
+            updateFileNode(fileNode, newResults.get(fileNode.getFile()), visibleLevels);
+        }
 
-            int[] fileCounts = new int[SeverityLevel.values().length];
-            if (problems != null) {
-                for (final Problem problem : problems) {
-                    final ResultTreeNode problemObj = new ResultTreeNode(file, problem);
+        final List<FileTreeNode> newNodes = new ArrayList<>();
+        for (final Map.Entry<PsiFile, List<Problem>> result : newResults.entrySet()) {
+            if (!isEmpty(result.getValue()) && !fileNodes.containsKey(result.getKey())) {
+                final FileTreeNode fileNode = new FileTreeNode(result.getKey(), result.getValue());
+                fileNode.setVisibleLevels(visibleLevels);
+                fileNodes.put(result.getKey(), fileNode);
+                newNodes.add(fileNode);
+            }
+        }
+        newNodes.sort(NODE_ORDER);
 
-                    final TogglableTreeNode problemNode = new TogglableTreeNode(problemObj);
-                    fileNode.add(problemNode);
-                    fileCounts[problem.severityLevel().ordinal()]++;
+        // the remaining nodes are in order: merge the new ones in at their final position
+        final List<FileTreeNode> remainingNodes = new ArrayList<>();
+        for (int index = 0; index < visibleRootNode.getChildCount(); ++index) {
+            remainingNodes.add((FileTreeNode) visibleRootNode.getChildAt(index));
+        }
+        final List<Integer> insertedIndices = new ArrayList<>();
+        if (!newNodes.isEmpty()) {
+            visibleRootNode.removeAllChildren();
+            int remaining = 0;
+            int inserted = 0;
+            while (remaining < remainingNodes.size() || inserted < newNodes.size()) {
+                if (inserted == newNodes.size() || (remaining < remainingNodes.size()
+                        && NODE_ORDER.compare(remainingNodes.get(remaining), newNodes.get(inserted)) <= 0)) {
+                    visibleRootNode.add(remainingNodes.get(remaining++));
+                } else {
+                    insertedIndices.add(visibleRootNode.getChildCount());
+                    visibleRootNode.add(newNodes.get(inserted++));
                 }
+            }
+        }
+        if (!insertedIndices.isEmpty()) {
+            nodesWereInserted(visibleRootNode, toArray(insertedIndices));
+        }
 
-                for (int i = 0; i < totalCounts.length; i++) {
-                    totalCounts[i] += fileCounts[i];
-                }
+        scannedFiles.clear();
+        scannedFiles.addAll(newResults.keySet());
+        updateRootText();
+    }
 
-                if (!problems.isEmpty()) {
-                    final ResultTreeNode nodeObject = new ResultTreeNode(file.getName(), fileCounts);
-                    fileNode.setUserObject(nodeObject);
-                    visibleRootNode.add(fileNode);
-                    hasProblems = true;
-                }
-            }
+    /**
+     * Display the problems of a file in an existing node, if they changed or are filtered differently.
+     */
+    private void updateFileNode(final FileTreeNode fileNode,
+                                final List<Problem> problems,
+                                final boolean[] visibleLevels) {
+        boolean changed = false;
+        if (!fileNode.hasProblems(problems)) {
+            fileNode.setProblems(problems);
+            changed = true;
         }
+        changed |= fileNode.setVisibleLevels(visibleLevels);
+        if (changed) {
+            nodeStructureChanged(fileNode);
+        }
+    }
 
-        if (hasProblems) {
-            setRootText(StringUtil.pluralize(
-                    PylintBundle.message("plugin.results.scan-results",
-                            concatProblems(totalCounts),
-                            results.size()), results.size()));
-        } else {
+    private static boolean isEmpty(@Nullable final List<Problem> problems) {
+        return problems == null || problems.isEmpty();
+    }
+
+    private static int[] toArray(final List<Integer> indices) {
+        return indices.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Replace the displayed results of some files, keeping the others as they are.
+     *
+     * @param files   the files that were scanned again.
+     * @param results their problems; files without problems may be missing.
+     * @param levels  the levels to display.
+     */
+    public void updateFileResults(final Collection<PsiFile> files,
+                                  final Map<PsiFile, List<Problem>> results,
+                                  final SeverityLevel... levels) {
+        for (final PsiFile file : files) {
+            addFileResults(file, results.getOrDefault(file, Collections.emptyList()), levels);
+        }
+        scannedFiles.addAll(files);
+        updateRootText();
+    }
+
+    /**
+     * @return the number of problems displayed, whatever their severity.
+     */
+    public int getProblemCount() {
+        int count = 0;
+        for (final FileTreeNode fileNode : fileNodes.values()) {
+            count += fileNode.getProblemCount();
+        }
+        return count;
+    }
+
+    /**
+     * @return the files whose results are displayed, with or without problems.
+     */
+    public Set<PsiFile> getScannedFiles() {
+        return Collections.unmodifiableSet(scannedFiles);
+    }
+
+    private void updateRootText() {
+        if (fileNodes.isEmpty()) {
             setRootMessage("plugin.results.scan-no-results");
+            return;
         }
 
-        filter(false, levels);
-        nodeStructureChanged(visibleRootNode);
+        final int[] totalCounts = new int[SeverityLevel.values().length];
+        for (final FileTreeNode fileNode : fileNodes.values()) {
+            final int[] fileCounts = fileNode.getProblemCounts();
+            for (int level = 0; level < fileCounts.length; ++level) {
+                totalCounts[level] += fileCounts[level];
+            }
+        }
+        setRootText(StringUtil.pluralize(
+                PylintBundle.message("plugin.results.scan-results",
+                        concatProblems(totalCounts),
+                        scannedFiles.size()), scannedFiles.size()));
+    }
+
+    /**
+     * Add, or replace, the results of a single file while a scan is still running.
+     *
+     * @param file     the scanned file.
+     * @param problems all the problems found so far in the file.
+     * @param levels   the levels to display.
+     */
+    public void addFileResults(final PsiFile file,
+                               final List<Problem> problems,
+                               final SeverityLevel... levels) {
+        final boolean[] visibleLevels = visibleLevels(levels);
+        final FileTreeNode previousNode = fileNodes.get(file);
+        if (previousNode != null && !isEmpty(problems)) {
+            updateFileNode(previousNode, problems, visibleLevels);
+            return;
+        }
+        if (previousNode != null) {
+            fileNodes.remove(file);
+            final int previousIndex = visibleRootNode.getIndex(previousNode);
+            visibleRootNode.remove(previousIndex);
+            nodesWereRemoved(visibleRootNode, new int[]{previousIndex}, new Object[]{previousNode});
+        }
+        if (isEmpty(problems)) {
+            return;
+        }
+
+        final FileTreeNode fileNode = new FileTreeNode(file, problems);
+        final int index = insertionIndex(file);
+        fileNode.setVisibleLevels(visibleLevels);
+        visibleRootNode.insert(fileNode, index);
+        fileNodes.put(file, fileNode);
+        nodesWereInserted(visibleRootNode, new int[]{index});
     }
 
-    private Iterable<PsiFile> sortedFileNames(final Map<PsiFile, List<Problem>> results) {
-        if (results == null || results.isEmpty()) {
-            return new ArrayList<>();
+    /**
+     * @return the position of the node of the file among the file nodes, which are kept in order.
+     */
+    private int insertionIndex(final PsiFile file) {
+        final String sortKey = FileTreeNode.sortKeyOf(file);
+        int low = 0;
+        int high = visibleRootNode.getChildCount();
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            final String otherKey = ((FileTreeNode) visibleRootNode.getChildAt(middle)).getSortKey();
+            if (otherKey.compareTo(sortKey) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
         }
-        final List<PsiFile> sortedFiles = new ArrayList<>(results.keySet());
-        sortedFiles.sort(comparing(PsiFileSystemItem::getName));
-        return sortedFiles;
+        return low;
     }
 
     static String concatProblems(int[] problemCounts) {
@@ -17,17 +17,25 @@
 package com.leinardi.pycharm.pylint.toolwindow;
 
 import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.MutableTreeNode;
 import javax.swing.tree.TreeNode;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
 /**
  * Tree node with togglable visibility.
+ * <p>
+ * The tree only sees the visible children: they are indexed on first access after a change, so that a batch of
+ * visibility changes costs a single pass, and the tree looks them up by position in constant time.
  */
 public class TogglableTreeNode extends DefaultMutableTreeNode {
     private static final long serialVersionUID = -4490734768175672868L;
 
     private boolean visible = true;
+    private transient int visibleIndex = -1;
+    private transient List<TreeNode> visibleChildren;
 
     public TogglableTreeNode() {
     }
@@ -41,48 +49,119 @@ public class TogglableTreeNode extends DefaultMutableTreeNode {
     }
 
     public void setVisible(final boolean visible) {
+        if (this.visible == visible) {
+            return;
+        }
         this.visible = visible;
+        if (parent instanceof TogglableTreeNode) {
+            ((TogglableTreeNode) parent).invalidateVisibleChildren();
+        }
     }
 
     List<TogglableTreeNode> getAllChildren() {
+        if (children == null) {
+            return Collections.emptyList();
+        }
         return children.stream()
                 .map(child -> (TogglableTreeNode) child)
                 .collect(Collectors.toList());
     }
 
-    @Override
-    public TreeNode getChildAt(final int index) {
-        int realIndex = -1;
-        int visibleIndex = -1;
+    private void invalidateVisibleChildren() {
+        visibleChildren = null;
+    }
 
-        for (final Object child : children) {
-            final TogglableTreeNode node = (TogglableTreeNode) child;
-            if (node.isVisible()) {
-                ++visibleIndex;
-            }
-            ++realIndex;
-            if (visibleIndex == index) {
-                return children.get(realIndex);
+    private List<TreeNode> getVisibleChildren() {
+        if (visibleChildren == null) {
+            final List<TreeNode> visibleNodes = new ArrayList<>();
+            if (children != null) {
+                for (final TreeNode child : children) {
+                    final TogglableTreeNode node = (TogglableTreeNode) child;
+                    node.visibleIndex = node.isVisible() ? visibleNodes.size() : -1;
+                    if (node.isVisible()) {
+                        visibleNodes.add(node);
+                    }
+                }
             }
+            visibleChildren = visibleNodes;
         }
+        return visibleChildren;
+    }
 
-        throw new ArrayIndexOutOfBoundsException("Invalid index: " + index);
+    @Override
+    public TreeNode getChildAt(final int index) {
+        final List<TreeNode> visibleNodes = getVisibleChildren();
+        if (index < 0 || index >= visibleNodes.size()) {
+            throw new ArrayIndexOutOfBoundsException("Invalid index: " + index);
+        }
+        return visibleNodes.get(index);
     }
 
     @Override
     public int getChildCount() {
-        if (children == null) {
-            return 0;
+        return getVisibleChildren().size();
+    }
+
+    /**
+     * @return the position of the child among the visible children, or -1 if it is hidden or not a child.
+     */
+    @Override
+    public int getIndex(final TreeNode child) {
+        if (child == null) {
+            throw new IllegalArgumentException("argument is null");
+        }
+        if (child.getParent() != this) {
+            return -1;
         }
+        getVisibleChildren();
+        return ((TogglableTreeNode) child).visibleIndex;
+    }
 
-        int count = 0;
-        for (final Object child : children) {
-            final TogglableTreeNode node = (TogglableTreeNode) child;
-            if (node.isVisible()) {
-                ++count;
-            }
+    /*
+     * The mutators of DefaultMutableTreeNode mix child positions with getChildCount() and getIndex(), which only
+     * account for the visible children here: they are overridden to work on all the children.
+     */
+
+    @Override
+    public void insert(final MutableTreeNode newChild, final int childIndex) {
+        super.insert(newChild, childIndex);
+        invalidateVisibleChildren();
+    }
+
+    @Override
+    public void add(final MutableTreeNode newChild) {
+        if (newChild != null && newChild.getParent() == this) {
+            insert(newChild, children.size() - 1);
+        } else {
+            insert(newChild, children == null ? 0 : children.size());
+        }
+    }
+
+    @Override
+    public void remove(final int childIndex) {
+        final MutableTreeNode child = (MutableTreeNode) children.remove(childIndex);
+        child.setParent(null);
+        invalidateVisibleChildren();
+    }
+
+    @Override
+    public void remove(final MutableTreeNode child) {
+        if (child == null) {
+            throw new IllegalArgumentException("argument is null");
         }
+        if (child.getParent() != this) {
+            throw new IllegalArgumentException("argument is not a child");
+        }
+        remove(children.indexOf(child));
+    }
 
-        return count;
+    @Override
+    public void removeAllChildren() {
+        if (children == null) {
+            return;
+        }
+        for (int childIndex = children.size() - 1; childIndex >= 0; childIndex--) {
+            remove(childIndex);
+        }
     }
 }
@@ -20,6 +20,8 @@ import com.intellij.openapi.fileChooser.FileChooserDescriptor;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.TextComponentAccessor;
 import com.intellij.openapi.ui.TextFieldWithBrowseButton;
+import com.intellij.ui.JBIntSpinner;
+import com.intellij.ui.components.JBCheckBox;
 import com.intellij.ui.components.JBTextField;
 import com.leinardi.pycharm.pylint.PylintBundle;
 import com.leinardi.pycharm.pylint.PylintConfigService;
@@ -34,11 +36,15 @@ import javax.swing.JPanel;
 import java.awt.event.ActionEvent;
 
 public class PylintConfigPanel {
+    private static final int MAX_SCAN_WORKERS = 64;
+
     private JPanel rootPanel;
     private JButton testButton;
     private com.intellij.openapi.ui.TextFieldWithBrowseButton pylintPathField;
     private com.intellij.openapi.ui.TextFieldWithBrowseButton pylintrcPathField;
     private JBTextField argumentsField;
+    private JBIntSpinner scanWorkersField;
+    private JBCheckBox scanOnSaveCheckBox;
     private Project project;
 
     public PylintConfigPanel(Project project) {
@@ -66,6 +72,8 @@ public class PylintConfigPanel {
                 TextComponentAccessor.TEXT_FIELD_WHOLE_TEXT);
         argumentsField.setText(pylintConfigService.getPylintArguments());
         argumentsField.getEmptyText().setText(PylintBundle.message("config.optional"));
+        scanWorkersField.setNumber(pylintConfigService.getScanWorkers());
+        scanOnSaveCheckBox.setSelected(pylintConfigService.isScanOnSave());
     }
 
     public JPanel getPanel() {
@@ -92,6 +100,14 @@ public class PylintConfigPanel {
         return argumentsField.getText();
     }
 
+    public int getScanWorkers() {
+        return scanWorkersField.getNumber();
+    }
+
+    public boolean isScanOnSave() {
+        return scanOnSaveCheckBox.isSelected();
+    }
+
     @SuppressWarnings("unused")
     private void createUIComponents() {
         JBTextField autodetectTextField = new JBTextField();
@@ -101,6 +117,7 @@ public class PylintConfigPanel {
         JBTextField optionalTextField = new JBTextField();
         optionalTextField.getEmptyText().setText(PylintBundle.message("config.optional"));
         pylintrcPathField = new TextFieldWithBrowseButton(optionalTextField);
+        scanWorkersField = new JBIntSpinner(PylintConfigService.defaultScanWorkers(), 1, MAX_SCAN_WORKERS);
     }
 
     private final class TestAction extends AbstractAction {
@@ -16,20 +16,33 @@
 
 package com.leinardi.pycharm.pylint.util;
 
-import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public final class Async {
     private static final Logger LOG = Logger.getInstance(Async.class);
 
-    private static final int FIFTY_MS = 50;
+    private static final int CANCEL_CHECK_MS = 100;
+
+    private static final Set<CancelWatch> CANCEL_WATCHES = ConcurrentHashMap.newKeySet();
+    // a single task checks all the watches, and only while there are some: guarded by CANCEL_WATCHES
+    private static ScheduledFuture<?> cancelChecker;
 
     private Async() {
     }
@@ -39,39 +52,133 @@ public final class Async {
                                       @Nullable final T defaultValue,
                                       final long timeoutInMs) {
         try {
-            return whenFinished(executeOnPooledThread(callable), timeoutInMs).get();
+            return resultOf(executeOnPooledThread(callable), timeoutInMs);
 
         } catch (Exception e) {
             return defaultValue;
         }
     }
 
-    public static <T> Future<T> executeOnPooledThread(final Callable<T> callable) {
-        return ApplicationManager.getApplication().executeOnPooledThread(callable);
+    /**
+     * Run a task on a pooled thread.
+     *
+     * @param callable the task.
+     * @return the future result of the task. Unlike a plain {@link CompletableFuture}, cancelling it interrupts the
+     * task, which is what stops a running scan.
+     */
+    public static <T> CompletableFuture<T> executeOnPooledThread(@NotNull final Callable<T> callable) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        final Future<?> task = ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            try {
+                result.complete(callable.call());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                task.cancel(true);
+            }
+        });
+        return result;
     }
 
-    public static <T> Future<T> whenFinished(final Future<T> future,
-                                             final long timeoutInMs) {
-        long elapsedTime = 0;
-        while (!future.isDone() && !future.isCancelled()) {
-            ProgressManager.checkCanceled();
-            elapsedTime += waitFor(FIFTY_MS);
-
-            if (timeoutInMs > 0 && elapsedTime >= timeoutInMs) {
+    /**
+     * Wait for a result, without blocking the cancellation of the caller: cancelling the progress indicator of the
+     * calling thread cancels the future, and the other way round.
+     *
+     * @param future      the future result.
+     * @param timeoutInMs the time after which the future is cancelled, or 0 to wait as long as it takes.
+     * @return the result.
+     * @throws ProcessCanceledException if the future or the progress indicator was cancelled, or the timeout expired.
+     */
+    public static <T> T resultOf(@NotNull final CompletableFuture<T> future,
+                                 final long timeoutInMs) {
+        if (timeoutInMs > 0 && !future.isDone()) {
+            final ScheduledFuture<?> timeout = AppExecutorUtil.getAppScheduledExecutorService().schedule(() -> {
                 LOG.debug("Async task exhausted timeout of " + timeoutInMs + "ms, cancelling.");
                 future.cancel(true);
-                throw new ProcessCanceledException();
+            }, timeoutInMs, TimeUnit.MILLISECONDS);
+            future.whenComplete((value, error) -> timeout.cancel(false));
+        }
+        try {
+            // wakes up as soon as the future completes, checking for cancellation in between
+            return ProgressIndicatorUtils.awaitWithCheckCanceled(future);
+        } catch (ProcessCanceledException e) {
+            future.cancel(true);
+            throw e;
+        }
+    }
+
+    /**
+     * Run an action once the current thread is interrupted, or its progress indicator cancelled, until the returned
+     * watch is cancelled.
+     * <p>
+     * Blocking reads from a process don't respond to either: this lets a cancelled scan stop the process it is
+     * waiting for, which in turn unblocks the thread.
+     *
+     * @param action the action, run at most once.
+     * @return the watch, to be cancelled when the thread is done with what the action stops.
+     */
+    public static CancelWatch onCancel(@NotNull final Runnable action) {
+        final CancelWatch watch = new CancelWatch(Thread.currentThread(),
+                ProgressManager.getGlobalProgressIndicator(), action);
+        synchronized (CANCEL_WATCHES) {
+            CANCEL_WATCHES.add(watch);
+            if (cancelChecker == null) {
+                cancelChecker = AppExecutorUtil.getAppScheduledExecutorService().scheduleWithFixedDelay(
+                        Async::checkCancelWatches, CANCEL_CHECK_MS, CANCEL_CHECK_MS, TimeUnit.MILLISECONDS);
             }
         }
-        return future;
+        return watch;
     }
 
-    private static long waitFor(final int millis) {
-        try {
-            Thread.sleep(millis);
-        } catch (InterruptedException ignored) {
-            Thread.currentThread().interrupt();
+    private static void checkCancelWatches() {
+        for (final CancelWatch watch : CANCEL_WATCHES) {
+            watch.check();
+        }
+        synchronized (CANCEL_WATCHES) {
+            if (CANCEL_WATCHES.isEmpty() && cancelChecker != null) {
+                cancelChecker.cancel(false);
+                cancelChecker = null;
+            }
+        }
+    }
+
+    /**
+     * Runs an action once a thread is interrupted, or its progress indicator cancelled.
+     */
+    public static final class CancelWatch {
+        private final Thread thread;
+        @Nullable
+        private final ProgressIndicator indicator;
+        private final Runnable action;
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private CancelWatch(final Thread thread,
+                            @Nullable final ProgressIndicator indicator,
+                            final Runnable action) {
+            this.thread = thread;
+            this.indicator = indicator;
+            this.action = action;
+        }
+
+        @SuppressWarnings("FutureReturnValueIgnored")
+        private void check() {
+            if ((thread.isInterrupted() || (indicator != null && indicator.isCanceled()))
+                    && done.compareAndSet(false, true)) {
+                CANCEL_WATCHES.remove(this);
+                // stopping a process may take a while: don't hold up the other watches
+                ApplicationManager.getApplication().executeOnPooledThread(action);
+            }
+        }
+
+        /**
+         * Stop watching: the action is not run after this returns, unless it already started.
+         */
+        public void cancel() {
+            done.set(true);
+            CANCEL_WATCHES.remove(this);
         }
-        return millis;
     }
 }
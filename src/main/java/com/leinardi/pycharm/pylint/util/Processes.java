@@ -0,0 +1,60 @@
+/*
+ * Copyright 2023 Roberto Leinardi.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.leinardi.pycharm.pylint.util;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public final class Processes {
+    private static final Logger LOG = Logger.getInstance(Processes.class);
+
+    private static final long GRACE_PERIOD_MS = 2000;
+
+    private Processes() {
+    }
+
+    /**
+     * Stop a process together with the processes it started, like the workers Pylint forks for {@code --jobs}.
+     * They are asked to terminate first, and killed if they are still running after a grace period.
+     *
+     * @param process the process.
+     */
+    public static void terminate(@NotNull final Process process) {
+        final List<ProcessHandle> tree = new ArrayList<>();
+        try {
+            // list the children first: they are re-parented once the process is gone
+            process.descendants().forEach(tree::add);
+        } catch (UnsupportedOperationException e) {
+            LOG.debug("Unable to list the children of a process", e);
+        }
+        process.destroy();
+        tree.forEach(ProcessHandle::destroy);
+        tree.add(process.toHandle());
+
+        AppExecutorUtil.getAppScheduledExecutorService().schedule(() -> tree.stream()
+                .filter(ProcessHandle::isAlive)
+                .forEach(handle -> {
+                    LOG.debug("Process " + handle.pid() + " did not terminate, killing it");
+                    handle.destroyForcibly();
+                }), GRACE_PERIOD_MS, TimeUnit.MILLISECONDS);
+    }
+}
@@ -16,11 +16,28 @@
 
 package com.leinardi.pycharm.pylint.util;
 
+import com.intellij.util.containers.Interner;
+import org.jetbrains.annotations.Nullable;
+
 public final class Strings {
 
+    private static final Interner<String> INTERNER = Interner.createWeakInterner();
+
     private Strings() {
     }
 
+    /**
+     * Share a single instance of strings that repeat across many results, such as message ids, symbols and the
+     * messages of checks that don't mention names.
+     *
+     * @param value the string, may be null.
+     * @return the shared instance.
+     */
+    @Nullable
+    public static String intern(@Nullable final String value) {
+        return value == null ? null : INTERNER.intern(value);
+    }
+
     public static boolean isBlank(final String value) {
         return value == null || value.trim().isEmpty();
     }
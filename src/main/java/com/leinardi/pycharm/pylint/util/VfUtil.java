@@ -16,12 +16,18 @@
 
 package com.leinardi.pycharm.pylint.util;
 
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.IndexNotReadyException;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.roots.ProjectFileIndex;
 import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.VirtualFileVisitor;
+import com.intellij.psi.search.FileTypeIndex;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.jetbrains.python.PythonFileType;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -32,15 +38,32 @@ public class VfUtil {
     private VfUtil() {
     }
 
+    @Nullable
     public static VirtualFile findVfUp(VirtualFile item, String searchItemName) {
-        VirtualFile parent = item.getParent();
-        if (parent != null) {
-            VirtualFile vf = VfsUtilCore.findRelativeFile(searchItemName, parent);
-            if (vf != null && !vf.isDirectory()) {
-                return vf;
+        return findVfUp(item, null, List.of(searchItemName));
+    }
+
+    /**
+     * Look for a file in the ancestors of the given item, closest first. All the names are tried in each directory
+     * before moving on to its parent.
+     *
+     * @param stopAt          the ancestor where the search stops, without looking into it, or null to search up to
+     *                        the root.
+     * @param searchItemNames the names of the file, by order of preference.
+     * @return the file, or null if there is none.
+     */
+    @Nullable
+    public static VirtualFile findVfUp(VirtualFile item, @Nullable VirtualFile stopAt, List<String> searchItemNames) {
+        for (VirtualFile parent = item.getParent(); parent != null && !parent.equals(stopAt);
+             parent = parent.getParent()) {
+            for (String searchItemName : searchItemNames) {
+                VirtualFile vf = VfsUtilCore.findRelativeFile(searchItemName, parent);
+                if (vf != null && !vf.isDirectory()) {
+                    return vf;
+                }
             }
         }
-        return findVfUp(parent, searchItemName);
+        return null;
     }
 
     public static Collection<VirtualFile> getAllSubFiles(VirtualFile virtualFile) {
@@ -76,6 +99,42 @@ public class VfUtil {
         return list;
     }
 
+    /**
+     * Find the Python files in the content of a project, leaving out excluded directories, like virtual environments,
+     * and libraries. This must be called in a read action.
+     * <p>
+     * The file type index is used when it is ready, so that no directory has to be visited. While indexing, only the
+     * content of the project is walked.
+     */
+    public static List<VirtualFile> findPythonProjectFiles(Project project) {
+        ProjectFileIndex projectFileIndex = ProjectFileIndex.getInstance(project);
+        if (!DumbService.isDumb(project)) {
+            try {
+                List<VirtualFile> list = new ArrayList<>();
+                for (VirtualFile file : FileTypeIndex.getFiles(PythonFileType.INSTANCE,
+                        GlobalSearchScope.projectScope(project))) {
+                    if (!projectFileIndex.isInLibraryClasses(file)) {
+                        list.add(file);
+                    }
+                }
+                return list;
+            } catch (IndexNotReadyException e) {
+                // indexing started meanwhile
+            }
+        }
+
+        List<VirtualFile> list = new ArrayList<>();
+        projectFileIndex.iterateContent(file -> {
+            if (!file.isDirectory()
+                    && FileTypes.isPython(file.getFileType())
+                    && !projectFileIndex.isInLibraryClasses(file)) {
+                list.add(file);
+            }
+            return true;
+        });
+        return list;
+    }
+
     public static List<VirtualFile> flattenFiles(final VirtualFile[] files) {
         final List<VirtualFile> flattened = new ArrayList<>();
 
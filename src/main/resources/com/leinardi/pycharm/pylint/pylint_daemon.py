@@ -0,0 +1,243 @@
+#
+# Copyright 2023 Roberto Leinardi.
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#      https://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+#
+"""Long-lived Pylint worker used by the Pylint PyCharm plugin.
+
+The worker keeps Pylint and astroid imported (and the astroid AST cache warm) between scans. It speaks a
+line-delimited JSON protocol over stdin/stdout:
+
+* on startup it writes ``{"ready": true, "version": "<pylint version>"}`` or ``{"error": "<reason>"}``;
+* each request is a line ``{"cwd": "<work directory>", "args": ["--rcfile", "...", "file.py", ...]}``, with an
+  optional ``"buffers"`` object mapping the paths of some of the files to the contents to lint instead of the files on
+  disk, e.g. unsaved editors, and an optional ``"sys-path"`` listing directories, like module source roots, to put in
+  front of ``sys.path`` for that request only;
+* while Pylint runs, each message is written as soon as it is emitted, as a line ``{"message": <issue>}``, where
+  ``<issue>`` has the same fields as Pylint's own JSON output;
+* the request is completed by a line ``{"exit-code": <int>, "output": "<captured output>"}``.
+"""
+import contextlib
+import io
+import json
+import os
+import sys
+
+
+class _AstroidCache(object):
+    """Drops cached astroid modules whose source file changed or disappeared since it was parsed.
+
+    The modification times are recorded right after each scan, when the modules it parsed were just read, and compared
+    before the next one.
+    """
+
+    def __init__(self):
+        self._mtimes = {}
+
+    @staticmethod
+    def _modules():
+        try:
+            from astroid import MANAGER
+        except ImportError:
+            return None
+        return MANAGER
+
+    @staticmethod
+    def _source_path(module):
+        path = getattr(module, "file", None)
+        if not path or not path.endswith(".py"):
+            return None
+        return os.path.abspath(path)
+
+    @staticmethod
+    def _mtime(path):
+        try:
+            return os.stat(path).st_mtime_ns
+        except OSError:
+            return None
+
+    def invalidate(self, linted_files):
+        manager = self._modules()
+        if manager is None:
+            return
+
+        linted = set(os.path.abspath(path) for path in linted_files)
+        cache = manager.astroid_cache
+        for name, module in list(cache.items()):
+            path = self._source_path(module)
+            if path is None:
+                continue
+            recorded = self._mtimes.get(path)
+            if path in linted or recorded is None or self._mtime(path) != recorded:
+                del cache[name]
+                self._mtimes.pop(path, None)
+        # module lookups are cheap to redo and may be stale when files were added or removed
+        getattr(manager, "_mod_file_cache", {}).clear()
+
+    def forget(self, paths):
+        """Drops the modules built from contents other than the files on disk."""
+        manager = self._modules()
+        if manager is None or not paths:
+            return
+
+        forgotten = set(os.path.abspath(path) for path in paths)
+        cache = manager.astroid_cache
+        for name, module in list(cache.items()):
+            if self._source_path(module) in forgotten:
+                del cache[name]
+        for path in forgotten:
+            self._mtimes.pop(path, None)
+
+    def record(self):
+        manager = self._modules()
+        if manager is None:
+            return
+
+        mtimes = {}
+        for module in list(manager.astroid_cache.values()):
+            path = self._source_path(module)
+            if path is not None:
+                # the modules kept from a previous scan were not read again: keep their recorded time
+                mtime = self._mtimes.get(path) or self._mtime(path)
+                if mtime is not None:
+                    mtimes[path] = mtime
+        self._mtimes = mtimes
+
+
+def _reply(out, payload):
+    out.write(payload)
+    out.write("\n")
+    out.flush()
+
+
+def _streaming_reporter(protocol_out):
+    from pylint.reporters import BaseReporter
+
+    class StreamingReporter(BaseReporter):
+        """Writes each message to the protocol stream as soon as Pylint emits it."""
+
+        name = "pycharm-stream"
+        extension = "json"
+
+        def handle_message(self, msg):
+            _reply(protocol_out, json.dumps({"message": {
+                "type": msg.category,
+                "module": msg.module,
+                "obj": msg.obj,
+                "line": msg.line or 0,
+                "column": msg.column or 0,
+                "path": msg.path,
+                "symbol": msg.symbol,
+                "message": msg.msg or "",
+                "message-id": msg.msg_id,
+            }}))
+
+        def display_messages(self, layout):
+            pass
+
+        def display_reports(self, layout):
+            pass
+
+        def _display(self, layout):
+            pass
+
+    return StreamingReporter(output=io.StringIO())
+
+
+@contextlib.contextmanager
+def _buffered_sources(buffers):
+    """Makes Pylint lint ``buffers``, mapping absolute paths to contents, instead of the files on disk."""
+    if not buffers:
+        yield
+        return
+    from pylint.lint import PyLinter
+
+    sources = dict((os.path.abspath(path), contents) for path, contents in buffers.items())
+    get_ast = PyLinter.get_ast
+
+    def buffered_get_ast(self, filepath, modname, data=None):
+        if data is None:
+            data = sources.get(os.path.abspath(filepath))
+        return get_ast(self, filepath, modname, data)
+
+    PyLinter.get_ast = buffered_get_ast
+    try:
+        yield
+    finally:
+        PyLinter.get_ast = get_ast
+
+
+def _lint(args, protocol_out, buffers):
+    from pylint.lint import Run
+
+    output = io.StringIO()
+    reporter = _streaming_reporter(protocol_out)
+    exit_code = 0
+    with contextlib.redirect_stdout(output), contextlib.redirect_stderr(output), _buffered_sources(buffers):
+        try:
+            try:
+                run = Run(args, reporter=reporter, exit=False)
+            except TypeError:
+                run = Run(args, reporter=reporter, do_exit=False)
+            exit_code = run.linter.msg_status
+        except SystemExit as e:
+            exit_code = e.code if isinstance(e.code, int) else 32
+        except Exception:  # pylint: disable=broad-except
+            import traceback
+            traceback.print_exc()
+            exit_code = 32
+    return exit_code, output.getvalue()
+
+
+def main():
+    protocol_in = io.TextIOWrapper(sys.stdin.buffer, encoding="utf-8")
+    protocol_out = io.TextIOWrapper(sys.stdout.buffer, encoding="utf-8")
+    # anything printed outside of a request must not corrupt the protocol stream
+    sys.stdout = sys.stderr
+    if sys.path and os.path.dirname(os.path.abspath(__file__)) == os.path.abspath(sys.path[0] or os.curdir):
+        del sys.path[0]
+
+    try:
+        import pylint
+        import pylint.lint  # noqa: F401 pylint: disable=unused-import
+    except Exception as e:  # pylint: disable=broad-except
+        _reply(protocol_out, json.dumps({"error": "%s: %s" % (type(e).__name__, e)}))
+        return 1
+    _reply(protocol_out, json.dumps({"ready": True, "version": getattr(pylint, "__version__", "")}))
+
+    astroid_cache = _AstroidCache()
+    for line in protocol_in:
+        line = line.strip()
+        if not line:
+            continue
+        request = json.loads(line)
+        if request.get("cwd"):
+            os.chdir(request["cwd"])
+        args = request.get("args", [])
+        astroid_cache.invalidate(arg for arg in args if arg.endswith(".py"))
+        buffers = request.get("buffers") or {}
+        saved_sys_path = list(sys.path)
+        sys.path[0:0] = request.get("sys-path") or []
+        try:
+            exit_code, output = _lint(args, protocol_out, buffers)
+        finally:
+            sys.path[:] = saved_sys_path
+            # the other modules must not see the contents of an unsaved editor
+            astroid_cache.forget(buffers)
+            astroid_cache.record()
+        _reply(protocol_out, json.dumps({"exit-code": exit_code, "output": output}))
+    return 0
+
+
+if __name__ == "__main__":
+    sys.exit(main())